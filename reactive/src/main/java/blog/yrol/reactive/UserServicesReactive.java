@@ -0,0 +1,51 @@
+package blog.yrol.reactive;
+
+import blog.yrol.reactive.sceurity.PasswordEncoders;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+@SpringBootApplication
+public class UserServicesReactive implements CommandLineRunner {
+
+    public static final Logger LOG = LoggerFactory.getLogger(UserServicesReactive.class);
+
+    public static void main(String[] args) {
+        SpringApplication.run(UserServicesReactive.class);
+    }
+
+    /**
+     * Algorithm and work factor of new password hashes, same settings as the main service (see PasswordEncoders)
+     **/
+    @Bean
+    public PasswordEncoder passwordEncoder(@Value("${users.password-encoder.algorithm:bcrypt}") String algorithm,
+                                           @Value("${users.password-encoder.bcrypt.strength:10}") int bcryptStrength,
+                                           @Value("${users.password-encoder.pbkdf2.iterations:310000}") int pbkdf2Iterations,
+                                           @Value("${users.password-encoder.argon2.memory-kb:19456}") int argon2MemoryKb,
+                                           @Value("${users.password-encoder.argon2.iterations:2}") int argon2Iterations) {
+        return PasswordEncoders.delegating(algorithm, bcryptStrength, pbkdf2Iterations, argon2MemoryKb, argon2Iterations);
+    }
+
+    /**
+     * Password hashing is CPU bound and blocking, it runs on this bounded scheduler and never on the event loop.
+     * Work beyond threads + queue capacity is rejected (503) instead of queueing without limit.
+     **/
+    @Bean(destroyMethod = "dispose")
+    public Scheduler passwordHashingScheduler(@Value("${users.password-hashing.threads:0}") int threads,
+                                              @Value("${users.password-hashing.queue-capacity:100}") int queueCapacity) {
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        return Schedulers.newBoundedElastic(poolSize, queueCapacity, "password-hashing", 60, true);
+    }
+
+    @Override
+    public void run(String... args) throws Exception {
+        LOG.info("User Services Reactive started");
+    }
+}
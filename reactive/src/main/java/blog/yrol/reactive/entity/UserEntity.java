@@ -0,0 +1,46 @@
+package blog.yrol.reactive.entity;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Table;
+
+/**
+ * Same "users" table layout as the main service (see schema.sql)
+ **/
+@Getter
+@Setter
+@NoArgsConstructor
+@Table("users")
+public class UserEntity {
+
+    @Id
+    private Long id;
+
+    private String userId;
+
+    private String firstName;
+
+    private String lastName;
+
+    private String email;
+
+    /*
+     * The email reversed, so domain (suffix) queries become prefix queries that can use an index. Kept in sync by setEmail()
+     */
+    @Setter(AccessLevel.NONE)
+    private String emailReversed;
+
+    private String encryptedPassword;
+
+    public void setEmail(String email) {
+        this.email = email;
+        this.emailReversed = reverseEmail(email);
+    }
+
+    public static String reverseEmail(String email) {
+        return email == null ? null : new StringBuilder(email).reverse().toString();
+    }
+}
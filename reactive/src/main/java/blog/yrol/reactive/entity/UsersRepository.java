@@ -0,0 +1,35 @@
+package blog.yrol.reactive.entity;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+@Repository
+public interface UsersRepository extends ReactiveCrudRepository<UserEntity, Long> {
+    Mono<UserEntity> findByEmail(String email);
+
+    Mono<UserEntity> findByUserId(String userId);
+
+    Flux<UserEntity> findAllBy(Pageable pageable);
+
+    /*
+     * Keyset pagination
+     */
+    Flux<UserEntity> findByIdGreaterThanOrderByIdAsc(long id, Pageable pageable);
+
+    /*
+     * Rows are emitted as the driver reads them, with backpressure from the HTTP response
+     */
+    Flux<UserEntity> findAllByOrderByIdAsc();
+
+    /*
+     * Finding users by email domain through the reversed email index
+     */
+    default Flux<UserEntity> findUserWithEmailEndingWith(String emailDomain) {
+        return findByEmailReversedStartingWith(UserEntity.reverseEmail(emailDomain));
+    }
+
+    Flux<UserEntity> findByEmailReversedStartingWith(String emailReversed);
+}
@@ -0,0 +1,14 @@
+package blog.yrol.reactive.exception;
+
+/**
+ * Thrown when the password hashing scheduler is saturated (all threads busy and the queue full).
+ * Mapped to 503 Service Unavailable with a Retry-After header, so clients back off instead of piling up requests.
+ **/
+public class PasswordHashingRejectedException extends RuntimeException {
+
+    public static final String RETRY_AFTER_SECONDS = "1";
+
+    public PasswordHashingRejectedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package blog.yrol.reactive.exception;
+
+public class UsersServiceException extends RuntimeException {
+    public UsersServiceException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package blog.yrol.reactive.sceurity;
+
+public class SecurityConstants {
+    public static final String TOKEN_PREFIX = "Bearer ";
+    public static final String HEADER_STRING = "Authorization";
+    public static final long EXPIRATION_TIME = 864000000; // 10 days
+}
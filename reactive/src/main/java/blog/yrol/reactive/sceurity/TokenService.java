@@ -0,0 +1,53 @@
+package blog.yrol.reactive.sceurity;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.impl.TextCodec;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.util.Date;
+
+/**
+ * Issues and verifies the JWTs used by the login endpoint and JwtAuthorizationWebFilter.
+ * The secret is read from users.token.secret, the same property as the main service, so one USERS_TOKEN_SECRET rotates both.
+ * The signing key is derived from it once and the configured parser is reused,
+ * it holds no per-parse state so it is safe to share between event loop threads.
+ **/
+@Component
+public class TokenService {
+
+    private static final SignatureAlgorithm SIGNATURE_ALGORITHM = SignatureAlgorithm.HS512;
+
+    private final SecretKey signingKey;
+
+    private final JwtParser jwtParser;
+
+    public TokenService(@Value("${users.token.secret}") String tokenSecret) {
+        /*
+         * Same key material jjwt derives from a base64 encoded secret string
+         */
+        byte[] keyBytes = TextCodec.BASE64.decode(tokenSecret);
+        this.signingKey = new SecretKeySpec(keyBytes, SIGNATURE_ALGORITHM.getJcaName());
+        this.jwtParser = Jwts.parser().setSigningKey(signingKey);
+    }
+
+    public String createToken(String subject) {
+        return Jwts.builder()
+                .setSubject(subject)
+                .setExpiration(new Date(System.currentTimeMillis() + SecurityConstants.EXPIRATION_TIME))
+                .signWith(SIGNATURE_ALGORITHM, signingKey)
+                .compact();
+    }
+
+    /**
+     * Verifies the signature and the expiration of the token and returns its claims
+     **/
+    public Claims verify(String token) {
+        return jwtParser.parseClaimsJws(token).getBody();
+    }
+}
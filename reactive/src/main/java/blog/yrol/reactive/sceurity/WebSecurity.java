@@ -0,0 +1,53 @@
+package blog.yrol.reactive.sceurity;
+
+import blog.yrol.reactive.service.UsersService;
+import org.springframework.context.annotation.Bean;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.authentication.ReactiveAuthenticationManager;
+import org.springframework.security.authentication.UserDetailsRepositoryReactiveAuthenticationManager;
+import org.springframework.security.config.annotation.web.reactive.EnableWebFluxSecurity;
+import org.springframework.security.config.web.server.SecurityWebFiltersOrder;
+import org.springframework.security.config.web.server.ServerHttpSecurity;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.web.server.SecurityWebFilterChain;
+import org.springframework.security.web.server.authentication.HttpStatusServerEntryPoint;
+import org.springframework.security.web.server.context.NoOpServerSecurityContextRepository;
+import reactor.core.scheduler.Scheduler;
+
+@EnableWebFluxSecurity
+public class WebSecurity {
+
+    /*
+     * Stateless, same rules as the main service: only signup and login are public, missing credentials get a 403
+     */
+    @Bean
+    public SecurityWebFilterChain securityWebFilterChain(ServerHttpSecurity http, TokenService tokenService) {
+        return http
+                .csrf().disable()
+                .httpBasic().disable()
+                .formLogin().disable()
+                .securityContextRepository(NoOpServerSecurityContextRepository.getInstance())
+                .authorizeExchange()
+                .pathMatchers(HttpMethod.POST, "/users", "/users/login")
+                .permitAll()
+                .anyExchange().authenticated().and()
+                .exceptionHandling()
+                .authenticationEntryPoint(new HttpStatusServerEntryPoint(HttpStatus.FORBIDDEN)).and()
+                .addFilterAt(new JwtAuthorizationWebFilter(tokenService), SecurityWebFiltersOrder.AUTHENTICATION)
+                .build();
+    }
+
+    /*
+     * Used by the login endpoint, the password check runs on the password hashing scheduler
+     */
+    @Bean
+    public ReactiveAuthenticationManager authenticationManager(UsersService usersService, PasswordEncoder passwordEncoder,
+                                                               Scheduler passwordHashingScheduler) {
+        UserDetailsRepositoryReactiveAuthenticationManager authenticationManager =
+                new UserDetailsRepositoryReactiveAuthenticationManager(usersService);
+        authenticationManager.setPasswordEncoder(passwordEncoder);
+        authenticationManager.setScheduler(passwordHashingScheduler);
+        return authenticationManager;
+    }
+}
@@ -0,0 +1,14 @@
+package blog.yrol.reactive.service;
+
+import blog.yrol.reactive.shared.UserDto;
+import org.springframework.security.core.userdetails.ReactiveUserDetailsService;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+public interface UsersService extends ReactiveUserDetailsService {
+    Mono<UserDto> createUser(UserDto user);
+    Flux<UserDto> getUsers(int page, int limit);
+    Flux<UserDto> getUsersAfter(long afterId, int limit);
+    Flux<UserDto> exportUsers();
+    Mono<UserDto> getUser(String email);
+}
@@ -0,0 +1,97 @@
+package blog.yrol.reactive.service;
+
+import blog.yrol.reactive.entity.UserEntity;
+import blog.yrol.reactive.entity.UsersRepository;
+import blog.yrol.reactive.exception.PasswordHashingRejectedException;
+import blog.yrol.reactive.exception.UsersServiceException;
+import blog.yrol.reactive.sceurity.UserPrincipal;
+import blog.yrol.reactive.shared.UserDto;
+import blog.yrol.reactive.shared.UserMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+import java.util.ArrayList;
+import java.util.UUID;
+import java.util.concurrent.RejectedExecutionException;
+
+@Service("usersService")
+public class UsersServiceImpl implements UsersService {
+
+    private UsersRepository usersRepository;
+    private UserMapper userMapper;
+    private PasswordEncoder passwordEncoder;
+    private Scheduler passwordHashingScheduler;
+
+    @Autowired
+    public UsersServiceImpl(UsersRepository usersRepository, UserMapper userMapper, PasswordEncoder passwordEncoder,
+                            Scheduler passwordHashingScheduler) {
+        this.usersRepository = usersRepository;
+        this.userMapper = userMapper;
+        this.passwordEncoder = passwordEncoder;
+        this.passwordHashingScheduler = passwordHashingScheduler;
+    }
+
+    /**
+     * The password is hashed on the password hashing scheduler, the event loop only waits for the result
+     **/
+    @Override
+    public Mono<UserDto> createUser(UserDto user) {
+        return usersRepository.findByEmail(user.getEmail())
+                .flatMap(existingUser -> Mono.<UserDto>error(new UsersServiceException("Record already exists")))
+                .switchIfEmpty(Mono.defer(() -> Mono.fromCallable(() -> passwordEncoder.encode(user.getPassword()))
+                        .subscribeOn(passwordHashingScheduler)
+                        .onErrorMap(RejectedExecutionException.class,
+                                e -> new PasswordHashingRejectedException("Password hashing is overloaded, please retry later"))
+                        .flatMap(encryptedPassword -> {
+                            UserEntity userEntity = userMapper.toUserEntity(user);
+                            userEntity.setUserId(UUID.randomUUID().toString());
+                            userEntity.setEncryptedPassword(encryptedPassword);
+                            return usersRepository.save(userEntity);
+                        })
+                        .map(userMapper::toUserDto)));
+    }
+
+    @Override
+    public Flux<UserDto> getUsers(int page, int limit) {
+        if (page > 0)
+            page = page - 1;
+
+        return usersRepository.findAllBy(PageRequest.of(page, limit, Sort.by("id")))
+                .map(userMapper::toUserDto);
+    }
+
+    @Override
+    public Flux<UserDto> getUsersAfter(long afterId, int limit) {
+        return usersRepository.findByIdGreaterThanOrderByIdAsc(afterId, PageRequest.of(0, limit))
+                .map(userMapper::toUserDto);
+    }
+
+    @Override
+    public Flux<UserDto> exportUsers() {
+        return usersRepository.findAllByOrderByIdAsc()
+                .map(userMapper::toUserDto);
+    }
+
+    @Override
+    public Mono<UserDto> getUser(String email) {
+        return usersRepository.findByEmail(email)
+                .map(userMapper::toUserDto);
+    }
+
+    /**
+     * An empty result makes the login fail with bad credentials
+     **/
+    @Override
+    public Mono<UserDetails> findByUsername(String email) {
+        return usersRepository.findByEmail(email)
+                .map(userEntity -> new UserPrincipal(userEntity.getEmail(), userEntity.getEncryptedPassword(), new ArrayList<>(),
+                        userEntity.getUserId(), userEntity.getFirstName(), userEntity.getLastName()));
+    }
+}
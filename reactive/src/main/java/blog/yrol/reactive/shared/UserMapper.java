@@ -0,0 +1,55 @@
+package blog.yrol.reactive.shared;
+
+import blog.yrol.reactive.entity.UserEntity;
+import blog.yrol.reactive.ui.request.UserDetailsRequestModel;
+import blog.yrol.reactive.ui.response.UserRest;
+import org.springframework.stereotype.Component;
+
+/**
+ * Single place for the user conversions between the web, service and data layers
+ **/
+@Component
+public class UserMapper {
+
+    /*
+     * The IDs and the encrypted password are generated by the service layer
+     */
+    public UserDto toUserDto(UserDetailsRequestModel userDetails) {
+        UserDto userDto = new UserDto();
+        userDto.setFirstName(userDetails.getFirstName());
+        userDto.setLastName(userDetails.getLastName());
+        userDto.setEmail(userDetails.getEmail());
+        userDto.setPassword(userDetails.getPassword());
+        return userDto;
+    }
+
+    public UserDto toUserDto(UserEntity userEntity) {
+        UserDto userDto = new UserDto();
+        userDto.setId(userEntity.getId());
+        userDto.setUserId(userEntity.getUserId());
+        userDto.setFirstName(userEntity.getFirstName());
+        userDto.setLastName(userEntity.getLastName());
+        userDto.setEmail(userEntity.getEmail());
+        userDto.setEncryptedPassword(userEntity.getEncryptedPassword());
+        return userDto;
+    }
+
+    public UserEntity toUserEntity(UserDto userDto) {
+        UserEntity userEntity = new UserEntity();
+        userEntity.setUserId(userDto.getUserId());
+        userEntity.setFirstName(userDto.getFirstName());
+        userEntity.setLastName(userDto.getLastName());
+        userEntity.setEmail(userDto.getEmail());
+        userEntity.setEncryptedPassword(userDto.getEncryptedPassword());
+        return userEntity;
+    }
+
+    public UserRest toUserRest(UserDto userDto) {
+        UserRest userRest = new UserRest();
+        userRest.setUserId(userDto.getUserId());
+        userRest.setFirstName(userDto.getFirstName());
+        userRest.setLastName(userDto.getLastName());
+        userRest.setEmail(userDto.getEmail());
+        return userRest;
+    }
+}
@@ -0,0 +1,197 @@
+package blog.yrol.reactive.ui.controllers;
+
+import blog.yrol.reactive.exception.PasswordHashingRejectedException;
+import blog.yrol.reactive.sceurity.SecurityConstants;
+import blog.yrol.reactive.sceurity.TokenService;
+import blog.yrol.reactive.sceurity.UserPrincipal;
+import blog.yrol.reactive.service.UsersService;
+import blog.yrol.reactive.shared.UserCursor;
+import blog.yrol.reactive.shared.UserDto;
+import blog.yrol.reactive.shared.UserMapper;
+import blog.yrol.reactive.ui.request.UserDetailsRequestModel;
+import blog.yrol.reactive.ui.request.UserLoginRequestModel;
+import blog.yrol.reactive.ui.response.UserExportFormat;
+import blog.yrol.reactive.ui.response.UserRest;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.authentication.ReactiveAuthenticationManager;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import javax.validation.Valid;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Same /users contract as the main service's UsersController and login filter, every handler is non-blocking.
+ **/
+@RestController
+@RequestMapping("/users")
+public class UsersController {
+
+    public static final String NEXT_CURSOR_HEADER = "Next-Cursor";
+
+    private static final String CSV_HEADER = "userId,firstName,lastName,email";
+
+    UsersService usersService;
+
+    UserMapper userMapper;
+
+    ReactiveAuthenticationManager authenticationManager;
+
+    TokenService tokenService;
+
+    ObjectWriter userRestWriter;
+
+    @Autowired
+    public UsersController(UsersService usersService, UserMapper userMapper,
+                           ReactiveAuthenticationManager authenticationManager, TokenService tokenService,
+                           ObjectMapper objectMapper) {
+        this.usersService = usersService;
+        this.userMapper = userMapper;
+        this.authenticationManager = authenticationManager;
+        this.tokenService = tokenService;
+        this.userRestWriter = objectMapper.writerFor(UserRest.class);
+    }
+
+    @PostMapping
+    public Mono<UserRest> createUser(@RequestBody @Valid Mono<UserDetailsRequestModel> userDetails) {
+        return userDetails
+                .map(userMapper::toUserDto)
+                .flatMap(usersService::createUser)
+                .map(userMapper::toUserRest);
+    }
+
+    /**
+     * Returns the JWT in the Authorization header and the user ID in the UserID header, 401 on bad credentials
+     **/
+    @PostMapping("/login")
+    public Mono<ResponseEntity<Void>> login(@RequestBody Mono<UserLoginRequestModel> credentials) {
+        return credentials
+                .flatMap(creds -> authenticationManager.authenticate(
+                        new UsernamePasswordAuthenticationToken(creds.getEmail(), creds.getPassword())))
+                .map(authentication -> {
+                    UserPrincipal userPrincipal = (UserPrincipal) authentication.getPrincipal();
+                    return ResponseEntity.ok()
+                            .header(SecurityConstants.HEADER_STRING,
+                                    SecurityConstants.TOKEN_PREFIX + tokenService.createToken(userPrincipal.getUsername()))
+                            .header("UserID", userPrincipal.getUserId())
+                            .<Void>build();
+                })
+                .onErrorResume(AuthenticationException.class,
+                        e -> Mono.just(ResponseEntity.status(HttpStatus.UNAUTHORIZED).build()))
+                .onErrorMap(RejectedExecutionException.class,
+                        e -> new PasswordHashingRejectedException("Password hashing is overloaded, please retry later"));
+    }
+
+    @GetMapping
+    public Flux<UserRest> getUsers(@RequestParam(value = "page", defaultValue = "0") int page,
+                                   @RequestParam(value = "limit", defaultValue = "2") int limit) {
+        return usersService.getUsers(page, limit)
+                .map(userMapper::toUserRest);
+    }
+
+    /**
+     * Keyset (cursor) pagination, selected by passing the "after" parameter (empty for the first page).
+     * One extra user is read to know whether there is a next page, its cursor is returned in the Next-Cursor header.
+     **/
+    @GetMapping(params = "after")
+    public Mono<ResponseEntity<List<UserRest>>> getUsersAfter(@RequestParam(value = "after") String after,
+                                                              @RequestParam(value = "limit", defaultValue = "2") int limit) {
+        long afterId;
+        try {
+            afterId = UserCursor.decode(after);
+        } catch (IllegalArgumentException e) {
+            return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor"));
+        }
+
+        return usersService.getUsersAfter(afterId, limit + 1)
+                .collectList()
+                .map(users -> {
+                    ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+                    if (users.size() > limit) {
+                        users = users.subList(0, limit);
+                        UserDto lastUser = users.get(limit - 1);
+                        response.header(NEXT_CURSOR_HEADER, UserCursor.encode(lastUser.getId()));
+                    }
+
+                    List<UserRest> body = new ArrayList<>(users.size());
+                    for (UserDto user : users) {
+                        body.add(userMapper.toUserRest(user));
+                    }
+                    return response.body(body);
+                });
+    }
+
+    /**
+     * Streams the whole user directory as NDJSON (default) or CSV, rows are written as they're read from the DB
+     * and the DB reads are driven by the client's demand (backpressure)
+     **/
+    @GetMapping("/export")
+    public ResponseEntity<Flux<String>> exportUsers(@RequestParam(value = "format", defaultValue = "ndjson") String format) {
+        UserExportFormat exportFormat;
+        try {
+            exportFormat = UserExportFormat.valueOf(format.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unsupported export format");
+        }
+
+        Flux<String> rows = usersService.exportUsers()
+                .map(userMapper::toUserRest)
+                .map(user -> exportRow(exportFormat, user));
+        if (exportFormat == UserExportFormat.CSV)
+            rows = Flux.just(CSV_HEADER + "\n").concatWith(rows);
+
+        return ResponseEntity.ok()
+                .contentType(exportFormat.getMediaType())
+                .body(rows);
+    }
+
+    /**
+     * The password hashing scheduler is saturated (signup or login), clients should retry later
+     **/
+    @ExceptionHandler(PasswordHashingRejectedException.class)
+    public ResponseEntity<String> handlePasswordHashingRejected(PasswordHashingRejectedException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, PasswordHashingRejectedException.RETRY_AFTER_SECONDS)
+                .body(e.getMessage());
+    }
+
+    private String exportRow(UserExportFormat exportFormat, UserRest user) {
+        if (exportFormat == UserExportFormat.CSV)
+            return csvField(user.getUserId()) + ',' + csvField(user.getFirstName()) + ','
+                    + csvField(user.getLastName()) + ',' + csvField(user.getEmail()) + '\n';
+
+        try {
+            return userRestWriter.writeValueAsString(user) + '\n';
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /*
+     * Quoting fields containing separators, quotes or line breaks (RFC 4180)
+     */
+    private static String csvField(String value) {
+        if (value == null)
+            return "";
+
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0)
+            return value;
+
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
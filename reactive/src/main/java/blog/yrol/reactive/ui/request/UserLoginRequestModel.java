@@ -0,0 +1,9 @@
+package blog.yrol.reactive.ui.request;
+
+import lombok.Data;
+
+@Data
+public class UserLoginRequestModel {
+    private String email;
+    private String password;
+}
@@ -0,0 +1,21 @@
+package blog.yrol.reactive.ui.response;
+
+import org.springframework.http.MediaType;
+
+/**
+ * Formats supported by the users export (GET /users/export?format=...), same as the main service
+ **/
+public enum UserExportFormat {
+    NDJSON(MediaType.APPLICATION_NDJSON),
+    CSV(MediaType.parseMediaType("text/csv"));
+
+    private final MediaType mediaType;
+
+    UserExportFormat(MediaType mediaType) {
+        this.mediaType = mediaType;
+    }
+
+    public MediaType getMediaType() {
+        return mediaType;
+    }
+}
@@ -0,0 +1,12 @@
+package blog.yrol.reactive.ui.response;
+
+import lombok.Data;
+
+@Data
+public class UserRest {
+    private String userId;
+    private String firstName;
+    private String lastName;
+    private String email;
+}
+
@@ -0,0 +1,13 @@
+create table if not exists users (
+    id bigint auto_increment primary key,
+    user_id varchar(255) not null,
+    first_name varchar(50) not null,
+    last_name varchar(50) not null,
+    email varchar(120) not null,
+    email_reversed varchar(120) not null,
+    encrypted_password varchar(255) not null,
+    constraint users_user_id_uk unique (user_id)
+);
+
+create unique index if not exists users_email_idx on users (email);
+create index if not exists users_email_reversed_idx on users (email_reversed);
@@ -0,0 +1,227 @@
+package blog.yrol.reactive.junit.ui.controllers;
+
+import blog.yrol.reactive.sceurity.SecurityConstants;
+import blog.yrol.reactive.sceurity.TokenService;
+import blog.yrol.reactive.ui.controllers.UsersController;
+import blog.yrol.reactive.ui.request.UserDetailsRequestModel;
+import blog.yrol.reactive.ui.request.UserLoginRequestModel;
+import blog.yrol.reactive.ui.response.UserRest;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.EntityExchangeResult;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Integration test of the reactive users API over real HTTP (random port), checking the same contract as the main service:
+ * signup, login returning the JWT, authenticated paging / cursor paging / export, and 403 without a token.
+ **/
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class UsersControllerIntegrationTest {
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @SpyBean
+    private TokenService tokenService;
+
+    String authorizationHeader;
+
+    /**
+     * Signing up three users and logging in with the first one
+     **/
+    @BeforeAll
+    void setUp() {
+        createUser("Yrol", "Fernando", "test@test.com");
+        createUser("John", "Cena", "john@cena.com");
+        createUser("Jane", "Doe", "jane@doe.com");
+
+        UserLoginRequestModel credentials = new UserLoginRequestModel();
+        credentials.setEmail("test@test.com");
+        credentials.setPassword("12345678");
+
+        authorizationHeader = webTestClient.post().uri("/users/login")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(credentials)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().exists("UserID")
+                .returnResult(Void.class)
+                .getResponseHeaders()
+                .getFirst(SecurityConstants.HEADER_STRING);
+    }
+
+    @Test
+    @DisplayName("Login with a wrong password is rejected")
+    void testLogin_whenPasswordIsWrong_returns401() {
+        // Arrange
+        UserLoginRequestModel credentials = new UserLoginRequestModel();
+        credentials.setEmail("test@test.com");
+        credentials.setPassword("wrongPassword");
+
+        // Act & Assert
+        webTestClient.post().uri("/users/login")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(credentials)
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.UNAUTHORIZED);
+    }
+
+    @Test
+    @DisplayName("Invalid user details are rejected")
+    void testCreateUser_whenFirstNameLessThanTwoCharacters_returns400() {
+        // Arrange
+        UserDetailsRequestModel userDetails = userDetails("Y", "Fernando", "short@test.com");
+
+        // Act & Assert
+        webTestClient.post().uri("/users")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(userDetails)
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    @DisplayName("GET /users requires JWT")
+    void testGetUsers_whenMissingJWT_returns403() {
+        webTestClient.get().uri("/users")
+                .exchange()
+                .expectStatus().isForbidden();
+    }
+
+    @Test
+    @DisplayName("GET /users works")
+    void testGetUsers_whenValidJWTProvided_returnsUsers() {
+        // Act
+        List<UserRest> users = webTestClient.get().uri("/users?page=1&limit=2")
+                .header(SecurityConstants.HEADER_STRING, authorizationHeader)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(UserRest.class)
+                .returnResult()
+                .getResponseBody();
+
+        // Assert
+        Assertions.assertEquals(2, users.size(), "The first page should contain two users");
+        Assertions.assertEquals("test@test.com", users.get(0).getEmail(), "Users should be in creation order");
+    }
+
+    /**
+     * The JWT filter is only part of the security chain, not of the main WebFlux filter chain as well
+     **/
+    @Test
+    @DisplayName("JWT is verified once per request")
+    void testGetUsers_whenValidJWTProvided_verifiesTokenOnce() {
+        // Arrange
+        clearInvocations(tokenService);
+
+        // Act
+        webTestClient.get().uri("/users?page=1&limit=2")
+                .header(SecurityConstants.HEADER_STRING, authorizationHeader)
+                .exchange()
+                .expectStatus().isOk();
+
+        // Assert
+        verify(tokenService, times(1)).verify(anyString());
+    }
+
+    @Test
+    @DisplayName("Cursor pagination returns the next cursor")
+    void testGetUsers_whenCursorProvided_returnsUsersAndNextCursor() {
+        // Act
+        EntityExchangeResult<List<UserRest>> firstPage = webTestClient.get().uri("/users?after=&limit=2")
+                .header(SecurityConstants.HEADER_STRING, authorizationHeader)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(UserRest.class)
+                .returnResult();
+        String nextCursor = firstPage.getResponseHeaders().getFirst(UsersController.NEXT_CURSOR_HEADER);
+
+        EntityExchangeResult<List<UserRest>> secondPage = webTestClient.get().uri("/users?after={after}&limit=2", nextCursor)
+                .header(SecurityConstants.HEADER_STRING, authorizationHeader)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(UserRest.class)
+                .returnResult();
+
+        // Assert
+        Assertions.assertEquals(2, firstPage.getResponseBody().size(), "The first page should contain two users");
+        Assertions.assertNotNull(nextCursor, "The first page should return the next cursor");
+        Assertions.assertEquals(1, secondPage.getResponseBody().size(), "The second page should contain the last user");
+        Assertions.assertEquals("jane@doe.com", secondPage.getResponseBody().get(0).getEmail(), "The last user doesn't match");
+        Assertions.assertNull(secondPage.getResponseHeaders().getFirst(UsersController.NEXT_CURSOR_HEADER),
+                "The last page shouldn't return a cursor");
+    }
+
+    @Test
+    @DisplayName("Users can be exported as NDJSON")
+    void testExportUsers_whenFormatIsNdjson_returnsOneJsonObjectPerLine() {
+        // Act
+        String body = webTestClient.get().uri("/users/export")
+                .header(SecurityConstants.HEADER_STRING, authorizationHeader)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(MediaType.APPLICATION_NDJSON)
+                .expectBody(String.class)
+                .returnResult()
+                .getResponseBody();
+
+        // Assert
+        String[] lines = body.split("\n");
+        Assertions.assertEquals(3, lines.length, "There should be one line per user");
+        Assertions.assertTrue(lines[0].startsWith("{") && lines[0].contains("\"email\":\"test@test.com\""),
+                "Each line should be a JSON object");
+    }
+
+    @Test
+    @DisplayName("The export format is case-insensitive")
+    void testExportUsers_whenFormatIsUpperCaseCsv_returnsCsv() {
+        // Act
+        String body = webTestClient.get().uri("/users/export?format=CSV")
+                .header(SecurityConstants.HEADER_STRING, authorizationHeader)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(MediaType.parseMediaType("text/csv"))
+                .expectBody(String.class)
+                .returnResult()
+                .getResponseBody();
+
+        // Assert
+        String[] lines = body.split("\n");
+        Assertions.assertEquals(4, lines.length, "There should be the header and one line per user");
+        Assertions.assertEquals("userId,firstName,lastName,email", lines[0], "The CSV header doesn't match");
+    }
+
+    private void createUser(String firstName, String lastName, String email) {
+        webTestClient.post().uri("/users")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(userDetails(firstName, lastName, email))
+                .exchange()
+                .expectStatus().isOk();
+    }
+
+    private static UserDetailsRequestModel userDetails(String firstName, String lastName, String email) {
+        UserDetailsRequestModel userDetails = new UserDetailsRequestModel();
+        userDetails.setFirstName(firstName);
+        userDetails.setLastName(lastName);
+        userDetails.setEmail(email);
+        userDetails.setPassword("12345678");
+        userDetails.setRepeatPassword("12345678");
+        return userDetails;
+    }
+}
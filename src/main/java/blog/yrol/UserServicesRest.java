@@ -1,13 +1,15 @@
 package blog.yrol;
 
+import blog.yrol.sceurity.PasswordEncoders;
 import blog.yrol.shared.SpringApplicationContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.Bean;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
 
 @SpringBootApplication
 public class UserServicesRest implements CommandLineRunner {
@@ -18,9 +20,16 @@ public class UserServicesRest implements CommandLineRunner {
         SpringApplication.run(UserServicesRest.class);
     }
 
+    /**
+     * Algorithm and work factor of new password hashes, tuned per environment (see PasswordEncoders)
+     **/
     @Bean
-    public BCryptPasswordEncoder bCryptPasswordEncoder() {
-        return new BCryptPasswordEncoder();
+    public PasswordEncoder passwordEncoder(@Value("${users.password-encoder.algorithm:bcrypt}") String algorithm,
+                                           @Value("${users.password-encoder.bcrypt.strength:10}") int bcryptStrength,
+                                           @Value("${users.password-encoder.pbkdf2.iterations:310000}") int pbkdf2Iterations,
+                                           @Value("${users.password-encoder.argon2.memory-kb:19456}") int argon2MemoryKb,
+                                           @Value("${users.password-encoder.argon2.iterations:2}") int argon2Iterations) {
+        return PasswordEncoders.delegating(algorithm, bcryptStrength, pbkdf2Iterations, argon2MemoryKb, argon2Iterations);
     }
 
     @Bean
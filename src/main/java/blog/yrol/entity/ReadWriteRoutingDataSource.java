@@ -0,0 +1,57 @@
+package blog.yrol.entity;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Sends read-only transactions to the replica pool and everything else (read-write transactions, work outside
+ * a transaction) to the primary pool. Has to be wrapped in a LazyConnectionDataSourceProxy: Spring only marks
+ * the transaction read-only after it began, so the connection must not be fetched before the first statement.
+ * Reads which can't tolerate replica lag (i.e. right after a write) are forced to the primary with onPrimary().
+ **/
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+
+    public enum Route {
+        PRIMARY,
+        REPLICA
+    }
+
+    private static final ThreadLocal<Boolean> PRIMARY_FORCED = new ThreadLocal<>();
+
+    public ReadWriteRoutingDataSource(DataSource primaryDataSource, DataSource replicaDataSource) {
+        setTargetDataSources(Map.of(Route.PRIMARY, primaryDataSource, Route.REPLICA, replicaDataSource));
+        setDefaultTargetDataSource(primaryDataSource);
+        afterPropertiesSet();
+    }
+
+    /**
+     * Runs the work against the primary, read-only transactions included.
+     * Only affects connections fetched within the work, a transaction already holding a connection keeps it.
+     **/
+    public static <T> T onPrimary(Supplier<T> work) {
+        Boolean previous = PRIMARY_FORCED.get();
+        PRIMARY_FORCED.set(Boolean.TRUE);
+        try {
+            return work.get();
+        } finally {
+            if (previous == null)
+                PRIMARY_FORCED.remove();
+        }
+    }
+
+    public static Route currentRoute() {
+        if (PRIMARY_FORCED.get() == null && TransactionSynchronizationManager.isCurrentTransactionReadOnly())
+            return Route.REPLICA;
+
+        return Route.PRIMARY;
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return currentRoute();
+    }
+}
@@ -0,0 +1,58 @@
+package blog.yrol.entity;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Sends the connections to the shard selected with onShard(), shard 0 when none is (i.e. Hibernate's startup and schema work).
+ * Has to be wrapped in a LazyConnectionDataSourceProxy so the shard is picked at the first statement:
+ * a transaction begun before onShard() (i.e. a @Transactional method routing its own body) still reaches the right shard.
+ * The shards are picked by UserShards.
+ **/
+public class ShardRoutingDataSource extends AbstractRoutingDataSource {
+
+    private static final ThreadLocal<Integer> CURRENT_SHARD = new ThreadLocal<>();
+
+    public ShardRoutingDataSource(List<? extends DataSource> shardDataSources) {
+        Map<Object, Object> targetDataSources = new HashMap<>();
+        for (int shard = 0; shard < shardDataSources.size(); shard++) {
+            targetDataSources.put(shard, shardDataSources.get(shard));
+        }
+
+        setTargetDataSources(targetDataSources);
+        setDefaultTargetDataSource(shardDataSources.get(0));
+        setLenientFallback(false);
+        afterPropertiesSet();
+    }
+
+    /**
+     * Null when no shard is selected (or sharding is off)
+     **/
+    public static Integer currentShard() {
+        return CURRENT_SHARD.get();
+    }
+
+    static <T> T onShard(int shard, Supplier<T> work) {
+        Integer previous = CURRENT_SHARD.get();
+        CURRENT_SHARD.set(shard);
+        try {
+            return work.get();
+        } finally {
+            if (previous == null) {
+                CURRENT_SHARD.remove();
+            } else {
+                CURRENT_SHARD.set(previous);
+            }
+        }
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return CURRENT_SHARD.get();
+    }
+}
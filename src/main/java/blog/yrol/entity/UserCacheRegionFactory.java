@@ -0,0 +1,22 @@
+package blog.yrol.entity;
+
+import org.hibernate.boot.spi.SessionFactoryOptions;
+import org.hibernate.cache.jcache.internal.JCacheRegionFactory;
+
+import java.net.URI;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * JCache region factory giving every SessionFactory its own CacheManager (closed with the SessionFactory).
+ * By default the caching provider hands out one JVM-wide CacheManager, so two SessionFactories in the same JVM
+ * (i.e. test contexts, each with its own in-memory DB) would share cached users and query results.
+ * The regions are still configured in application.conf.
+ **/
+public class UserCacheRegionFactory extends JCacheRegionFactory {
+
+    @Override
+    protected URI getUri(SessionFactoryOptions settings, Map properties) {
+        return URI.create("users-cache-" + UUID.randomUUID());
+    }
+}
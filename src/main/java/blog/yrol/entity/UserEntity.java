@@ -1,9 +1,17 @@
 package blog.yrol.entity;
 
+import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
 
 import javax.persistence.*;
 import java.io.Serializable;
@@ -13,15 +21,30 @@ import java.io.Serializable;
 @AllArgsConstructor
 @NoArgsConstructor
 @Entity
-@Table(name = "users")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "users")
+@NaturalIdCache(region = "users-natural-id")
+@Table(name = "users", indexes = {
+        @Index(name = "users_email_idx", columnList = "email", unique = true),
+        @Index(name = "users_email_reversed_idx", columnList = "emailReversed")
+})
 public class UserEntity implements Serializable {
 
     private static final long serialVersionUID = 5313493413859894403L;
 
+    /*
+     * Pooled-lo sequence, Hibernate reserves a block of IDs per sequence call so inserts can be batched (see UserIdGenerator)
+     */
     @Id
-    @GeneratedValue
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "users_seq")
+    @GenericGenerator(name = "users_seq", strategy = "blog.yrol.entity.UserIdGenerator",
+            parameters = @Parameter(name = SequenceStyleGenerator.SEQUENCE_PARAM, value = "users_seq"))
     private long id;
 
+    /*
+     * Immutable natural ID, lookups by userId are resolved from the second-level cache (see UsersRepositoryCustomImpl)
+     */
+    @NaturalId
     @Column(nullable = false, unique = true)
     private String userId;
 
@@ -34,7 +57,22 @@ public class UserEntity implements Serializable {
     @Column(nullable = false, length = 120)
     private String email;
 
+    /*
+     * The email reversed, so domain (suffix) queries become prefix queries that can use an index. Kept in sync by setEmail()
+     */
+    @Setter(AccessLevel.NONE)
+    @Column(nullable = false, length = 120)
+    private String emailReversed;
+
     @Column(nullable = false)
     private String encryptedPassword;
 
+    public void setEmail(String email) {
+        this.email = email;
+        this.emailReversed = reverseEmail(email);
+    }
+
+    public static String reverseEmail(String email) {
+        return email == null ? null : new StringBuilder(email).reverse().toString();
+    }
 }
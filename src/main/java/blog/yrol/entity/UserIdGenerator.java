@@ -0,0 +1,65 @@
+package blog.yrol.entity;
+
+import org.hibernate.HibernateException;
+import org.hibernate.MappingException;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.enhanced.Optimizer;
+import org.hibernate.id.enhanced.OptimizerFactory;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.hibernate.internal.util.config.ConfigurationHelper;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+import java.io.Serializable;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Sequence based user ID generator using the pooled-lo optimizer: every sequence call reserves a block of
+ * "allocation size" IDs which are then handed out in memory, so inserts don't need a DB round trip each and can be batched.
+ * The allocation size is read from the Hibernate settings ("spring.jpa.properties.users.id.allocation_size"),
+ * the sequence is created with the same increment.
+ * When sharded (see UserShards) every shard has its own sequence, so its own reserved block, and the shard is encoded
+ * in the low digits of the ID (sequence value * MAX_SHARDS + shard) to keep the IDs unique across the shards.
+ **/
+public class UserIdGenerator extends SequenceStyleGenerator {
+
+    public static final String ALLOCATION_SIZE_SETTING = "users.id.allocation_size";
+
+    public static final int DEFAULT_ALLOCATION_SIZE = 50;
+
+    private final Map<Integer, Optimizer> shardOptimizers = new ConcurrentHashMap<>();
+
+    private int allocationSize;
+
+    private int initialValue;
+
+    @Override
+    public void configure(Type type, Properties params, ServiceRegistry serviceRegistry) throws MappingException {
+        allocationSize = ConfigurationHelper.getInt(ALLOCATION_SIZE_SETTING,
+                serviceRegistry.getService(ConfigurationService.class).getSettings(), DEFAULT_ALLOCATION_SIZE);
+
+        params.setProperty(INCREMENT_PARAM, String.valueOf(allocationSize));
+        params.setProperty(OPT_PARAM, "pooled-lo");
+
+        super.configure(type, params, serviceRegistry);
+
+        initialValue = determineInitialValue(params);
+    }
+
+    @Override
+    public Serializable generate(SharedSessionContractImplementor session, Object object) throws HibernateException {
+        Integer shard = ShardRoutingDataSource.currentShard();
+
+        if (shard == null)
+            return super.generate(session, object);
+
+        Optimizer optimizer = shardOptimizers.computeIfAbsent(shard,
+                key -> OptimizerFactory.buildOptimizer("pooled-lo", Long.class, allocationSize, initialValue));
+
+        long value = ((Number) optimizer.generate(getDatabaseStructure().buildCallback(session))).longValue();
+        return value * UserShards.MAX_SHARDS + shard;
+    }
+}
@@ -0,0 +1,163 @@
+package blog.yrol.entity;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+
+/**
+ * Places the users on the shards (users.sharding.urls, see ShardedDataSourceConfiguration) by a hash of their email,
+ * the shard is also encoded in the first 4 hex digits of the userId so lookups by userId go straight to one shard.
+ * Changing the number of shards moves most users, so it needs a migration.
+ * Queries spanning every shard (paging) run in parallel on a small pool, one task per shard.
+ * With a single DB (no sharding) everything runs as is on the calling thread.
+ **/
+@Component
+public class UserShards implements DisposableBean {
+
+    /*
+     * Also the factor the shard is encoded with in the IDs (see UserIdGenerator)
+     */
+    public static final int MAX_SHARDS = 1024;
+
+    private final int shardCount;
+
+    private final ExecutorService scatterExecutor;
+
+    public UserShards(@Value("${users.sharding.urls:}") List<String> shardUrls) {
+        this.shardCount = Math.max(1, shardUrls.size());
+
+        if (shardCount > MAX_SHARDS)
+            throw new IllegalArgumentException("At most " + MAX_SHARDS + " shards are supported: " + shardCount);
+
+        AtomicInteger threadNumber = new AtomicInteger();
+
+        this.scatterExecutor = shardCount == 1 ? null : Executors.newFixedThreadPool(shardCount * 4, runnable -> {
+            Thread thread = new Thread(runnable, "user-shards-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    /*
+     * CRC32 of the UTF-8 bytes, stable between releases and easy to compute from other tools (i.e. migrations)
+     */
+    public int shardOf(String email) {
+        if (shardCount == 1)
+            return 0;
+
+        CRC32 crc = new CRC32();
+        crc.update(email.getBytes(StandardCharsets.UTF_8));
+        return (int) (crc.getValue() % shardCount);
+    }
+
+    public int shardOfUserId(String userId) {
+        if (shardCount == 1)
+            return 0;
+
+        int shard;
+        try {
+            shard = Integer.parseInt(userId.substring(0, 4), 16);
+        } catch (NumberFormatException | IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Invalid user ID: " + userId, e);
+        }
+
+        if (shard >= shardCount)
+            throw new IllegalArgumentException("Invalid user ID: " + userId);
+
+        return shard;
+    }
+
+    /**
+     * A random UUID, with the first 4 hex digits replaced by the shard of the email when sharded
+     **/
+    public String newUserId(String email) {
+        String userId = UUID.randomUUID().toString();
+
+        if (shardCount == 1)
+            return userId;
+
+        return String.format("%04x", shardOf(email)) + userId.substring(4);
+    }
+
+    /**
+     * Runs the work against the given shard. Transactions begun within the work are bound to the shard,
+     * so are the ones begun before it as long as they haven't run a statement yet.
+     **/
+    public <T> T onShard(int shard, Supplier<T> work) {
+        if (shardCount == 1)
+            return work.get();
+
+        return ShardRoutingDataSource.onShard(shard, work);
+    }
+
+    public <T> T onShardOf(String email, Supplier<T> work) {
+        return onShard(shardOf(email), work);
+    }
+
+    /**
+     * Runs the work against every shard, one after the other (i.e. for work which isn't thread-safe)
+     **/
+    public void forEachShard(Runnable work) {
+        for (int shard = 0; shard < shardCount; shard++) {
+            onShard(shard, () -> {
+                work.run();
+                return null;
+            });
+        }
+    }
+
+    /**
+     * Runs the work against every shard in parallel (scatter), the results are returned by shard (gather)
+     **/
+    public <T> List<T> onEveryShard(Supplier<T> work) {
+        if (shardCount == 1)
+            return List.of(work.get());
+
+        List<CompletableFuture<T>> futures = new ArrayList<>(shardCount);
+        for (int shard = 0; shard < shardCount; shard++) {
+            int target = shard;
+            futures.add(CompletableFuture.supplyAsync(() -> onShard(target, work), scatterExecutor));
+        }
+
+        List<T> results = new ArrayList<>(shardCount);
+        for (CompletableFuture<T> future : futures) {
+            results.add(join(future));
+        }
+        return results;
+    }
+
+    @Override
+    public void destroy() {
+        if (scatterExecutor != null)
+            scatterExecutor.shutdown();
+    }
+
+    /*
+     * Rethrowing the task's own exception instead of the CompletionException wrapper
+     */
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw e;
+        }
+    }
+}
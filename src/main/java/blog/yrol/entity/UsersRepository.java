@@ -1,22 +1,106 @@
 package blog.yrol.entity;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import javax.persistence.QueryHint;
+
+import blog.yrol.shared.UserSummary;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.PagingAndSortingRepository;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 @Repository
-public interface UsersRepository extends PagingAndSortingRepository<UserEntity, Long> {
+public interface UsersRepository extends PagingAndSortingRepository<UserEntity, Long>, UsersRepositoryCustom {
+    /*
+     * Cached query, the cached result is dropped by Hibernate whenever the users table is written to
+     * (the query cache is off with a read replica, see ReadWriteDataSourceConfiguration).
+     * Read-only unless called within a read-write transaction (i.e. UsersServiceImpl.updatePassword()),
+     * so logins don't pay for snapshots, dirty checks and the flush
+     */
+    @Transactional(readOnly = true)
+    @QueryHints(@QueryHint(name = org.hibernate.jpa.QueryHints.HINT_CACHEABLE, value = "true"))
     UserEntity findByEmail(String email);
 
-    UserEntity findByUserId(String userId);
+    /*
+     * Set based duplicate check for bulk inserts, returns which of the given emails are already registered
+     */
+    @Query("select user.email from UserEntity user where user.email in :emails")
+    Set<String> findExistingEmails(@Param("emails") Collection<String> emails);
+
+    /*
+     * Suffix queries go through the reversed email column (a "like 'prefix%'" query can use its index)
+     */
+    default UserEntity findByEmailEndsWith(String email) {
+        return findOneByEmailReversedStartingWith(UserEntity.reverseEmail(email));
+    }
+
+    UserEntity findOneByEmailReversedStartingWith(String emailReversed);
+
+    List<UserEntity> findByEmailReversedStartingWith(String emailReversed);
+
+    /*
+     * The list queries below only select the public columns into UserSummary (no entities, no password hashes).
+     * Offset pagination, returning a List skips the count query
+     */
+    @Query("select new blog.yrol.shared.UserSummary(user.id, user.userId, user.firstName, user.lastName, user.email)"
+            + " from UserEntity user order by user.id")
+    List<UserSummary> findSummaries(Pageable pageable);
+
+    /*
+     * Keyset pagination, returning a Slice skips the count query
+     */
+    @Query("select new blog.yrol.shared.UserSummary(user.id, user.userId, user.firstName, user.lastName, user.email)"
+            + " from UserEntity user where user.id > :id order by user.id")
+    Slice<UserSummary> findSummariesByIdGreaterThan(@Param("id") long id, Pageable pageable);
+
+    /*
+     * Streaming all the users for exports, has to be consumed (and closed) within a transaction.
+     * The fetch size makes the JDBC driver read the rows in batches instead of materializing the whole result
+     */
+    @QueryHints(@QueryHint(name = org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("select new blog.yrol.shared.UserSummary(user.id, user.userId, user.firstName, user.lastName, user.email)"
+            + " from UserEntity user order by user.id")
+    Stream<UserSummary> streamAllSummaries();
+
+    /*
+     * Streaming only the emails (i.e. to build the email Bloom filter), same rules as streamAllSummaries()
+     */
+    @QueryHints({
+            @QueryHint(name = org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = org.hibernate.jpa.QueryHints.HINT_READONLY, value = "true")
+    })
+    @Query("select user.email from UserEntity user")
+    Stream<String> streamAllEmails();
+
+    /*
+     * The streams consumed within their own read-only transaction, i.e. one per shard (see UserShards.forEachShard())
+     */
+    @Transactional(readOnly = true)
+    default void forEachSummary(Consumer<UserSummary> consumer) {
+        try (Stream<UserSummary> users = streamAllSummaries()) {
+            users.forEach(consumer);
+        }
+    }
 
-    UserEntity findByEmailEndsWith(String email);
+    @Transactional(readOnly = true)
+    default void forEachEmail(Consumer<String> consumer) {
+        try (Stream<String> emails = streamAllEmails()) {
+            emails.forEach(consumer);
+        }
+    }
 
     /*
-     * Using a JPQL query to find users ending with email
+     * Finding users by email domain, using the reversed email index instead of "like %:emailDomain" (full scan)
      */
-    @Query("select user from UserEntity user where user.email like %:emailDomain")
-    List<UserEntity> findUserWithEmailEndingWith(@Param("emailDomain") String emailDomain);
+    default List<UserEntity> findUserWithEmailEndingWith(String emailDomain) {
+        return findByEmailReversedStartingWith(UserEntity.reverseEmail(emailDomain));
+    }
 }
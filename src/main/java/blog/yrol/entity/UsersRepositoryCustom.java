@@ -0,0 +1,5 @@
+package blog.yrol.entity;
+
+public interface UsersRepositoryCustom {
+    UserEntity findByUserId(String userId);
+}
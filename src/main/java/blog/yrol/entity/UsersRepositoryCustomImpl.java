@@ -0,0 +1,47 @@
+package blog.yrol.entity;
+
+import org.hibernate.Session;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+
+/**
+ * Lookups by the userId natural ID, so Hibernate can resolve them from the second-level cache (natural ID -> ID -> entity)
+ * instead of running a query every time.
+ * When sharded the lookup goes to the shard encoded in the userId (see UserShards).
+ **/
+public class UsersRepositoryCustomImpl implements UsersRepositoryCustom {
+
+    private final EntityManager entityManager;
+
+    /*
+     * Missing in the JPA test slices (@DataJpaTest), the lookups then go to the only DB
+     */
+    private final ObjectProvider<UserShards> userShards;
+
+    public UsersRepositoryCustomImpl(EntityManager entityManager, ObjectProvider<UserShards> userShards) {
+        this.entityManager = entityManager;
+        this.userShards = userShards;
+    }
+
+    /*
+     * The transaction doesn't have a connection before the first statement, so routing within it still reaches the shard
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public UserEntity findByUserId(String userId) {
+        UserShards shards = userShards.getIfAvailable();
+
+        if (shards == null)
+            return loadByUserId(userId);
+
+        return shards.onShard(shards.shardOfUserId(userId), () -> loadByUserId(userId));
+    }
+
+    private UserEntity loadByUserId(String userId) {
+        return entityManager.unwrap(Session.class)
+                .bySimpleNaturalId(UserEntity.class)
+                .load(userId);
+    }
+}
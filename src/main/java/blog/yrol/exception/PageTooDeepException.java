@@ -0,0 +1,12 @@
+package blog.yrol.exception;
+
+/**
+ * Thrown when an offset page reaches too far into a sharded user directory (every shard would have to load all the users before it).
+ * Mapped to 400 Bad Request, deep pages have to be read with the cursor.
+ **/
+public class PageTooDeepException extends RuntimeException {
+
+    public PageTooDeepException(String message) {
+        super(message);
+    }
+}
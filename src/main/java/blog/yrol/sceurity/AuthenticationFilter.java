@@ -1,18 +1,19 @@
 package blog.yrol.sceurity;
 
-import blog.yrol.service.UsersService;
-import blog.yrol.shared.SpringApplicationContext;
-import blog.yrol.shared.UserDto;
+import blog.yrol.exception.PasswordHashingRejectedException;
+import blog.yrol.ui.request.UserLoginRequestModel;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import io.jsonwebtoken.Jwts;
-import io.jsonwebtoken.SignatureAlgorithm;
+import com.fasterxml.jackson.databind.ObjectReader;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.http.HttpHeaders;
 import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.InternalAuthenticationServiceException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.AuthenticationException;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
-import org.springframework.util.StreamUtils;
 
 import javax.servlet.FilterChain;
 import javax.servlet.ServletException;
@@ -20,57 +21,132 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Date;
-import java.util.Map;
 
+/**
+ * Login endpoint (POST /users/login), every attempt is timed as "users.login" with its result (success, failure, invalid body
+ * or rejected when the password hashing pool is saturated), from reading the credentials until the token is issued.
+ * The credentials are parsed straight from the request stream with a shared reader, bodies over the maximum size are
+ * turned away with 413 (by Content-Length before reading anything, otherwise as soon as the limit is crossed).
+ **/
 public class AuthenticationFilter extends UsernamePasswordAuthenticationFilter {
+
+    private static final String LOGIN_SAMPLE_ATTRIBUTE = AuthenticationFilter.class.getName() + ".LOGIN_SAMPLE";
+
     private final AuthenticationManager authenticationManager;
 
-    public AuthenticationFilter(AuthenticationManager authenticationManager) {
+    private final TokenService tokenService;
+
+    private final MeterRegistry meterRegistry;
+
+    private final ObjectReader credentialsReader;
+
+    private final long maxBodyBytes;
+
+    public AuthenticationFilter(AuthenticationManager authenticationManager, TokenService tokenService, MeterRegistry meterRegistry,
+                                ObjectMapper objectMapper, long maxBodyBytes) {
         this.authenticationManager = authenticationManager;
+        this.tokenService = tokenService;
+        this.meterRegistry = meterRegistry;
+        this.credentialsReader = objectMapper.readerFor(UserLoginRequestModel.class);
+        this.maxBodyBytes = maxBodyBytes;
     }
 
     @Override
     public Authentication attemptAuthentication(HttpServletRequest req,
                                                 HttpServletResponse res) throws AuthenticationException {
-        try {
-            byte[] inputStreamBytes = StreamUtils.copyToByteArray(req.getInputStream());
-            Map<String, String> jsonRequest = new ObjectMapper().readValue(inputStreamBytes, Map.class);
+        req.setAttribute(LOGIN_SAMPLE_ATTRIBUTE, Timer.start(meterRegistry));
+
+        if (req.getContentLengthLong() > maxBodyBytes)
+            return rejectBody(req, res, HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE);
 
-//            UserLoginRequestModel creds = new ObjectMapper()
-//                    .readValue(jsonRequest.get("body"), UserLoginRequestModel.class);
+        try {
+            UserLoginRequestModel credentials = credentialsReader.readValue(new BoundedInputStream(req.getInputStream(), maxBodyBytes));
+            if (credentials == null || isBlank(credentials.getEmail()) || isBlank(credentials.getPassword()))
+                return rejectBody(req, res, HttpServletResponse.SC_BAD_REQUEST);
 
             return authenticationManager.authenticate(
                     new UsernamePasswordAuthenticationToken(
-                            jsonRequest.get("email"),
-                            jsonRequest.get("password"),
+                            credentials.getEmail(),
+                            credentials.getPassword(),
                             new ArrayList<>())
             );
 
+        } catch (PasswordHashingRejectedException e) {
+            return rejectLogin(req, res);
+        } catch (InternalAuthenticationServiceException e) {
+            if (e.getCause() instanceof PasswordHashingRejectedException)
+                return rejectLogin(req, res);
+            throw e;
+        } catch (BoundedInputStream.TooLargeException e) {
+            return rejectBody(req, res, HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE);
+        } catch (JsonProcessingException e) {
+            return rejectBody(req, res, HttpServletResponse.SC_BAD_REQUEST);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
     }
 
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+
+    /*
+     * Oversized, malformed or incomplete (missing email / password) body, ends the filter without authentication (same as rejectLogin)
+     */
+    private Authentication rejectBody(HttpServletRequest req, HttpServletResponse res, int status) {
+        res.setStatus(status);
+        recordLogin(req, "invalid");
+        return null;
+    }
+
+    /*
+     * The hashing pool is saturated, answering 503 right away (returning null ends the filter without authentication)
+     */
+    private Authentication rejectLogin(HttpServletRequest req, HttpServletResponse res) {
+        res.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        res.setHeader(HttpHeaders.RETRY_AFTER, PasswordHashingRejectedException.RETRY_AFTER_SECONDS);
+        recordLogin(req, "rejected");
+        return null;
+    }
+
     @Override
     protected void successfulAuthentication(HttpServletRequest req,
                                             HttpServletResponse res,
                                             FilterChain chain,
                                             Authentication auth) throws IOException, ServletException {
 
-        String userName = ((UserDetails) auth.getPrincipal()).getUsername();
+        /*
+         * The principal already carries the user ID from the lookup done during authentication (UsersServiceImpl.loadUserByUsername)
+         */
+        UserPrincipal userPrincipal = (UserPrincipal) auth.getPrincipal();
+        String userName = userPrincipal.getUsername();
 
-        String token = Jwts.builder()
-                .setSubject(userName)
-                .setExpiration(new Date(System.currentTimeMillis() + (long) 864000000))
-                .signWith(SignatureAlgorithm.HS512, SecurityConstants.TOKEN_SECRET)
-                .compact();
-        UsersService userService = (UsersService) SpringApplicationContext.getBean("usersService");
-        UserDto userDto = userService.getUser(userName);
+        String token = tokenService.createToken(userName);
 
         res.addHeader(SecurityConstants.HEADER_STRING, SecurityConstants.TOKEN_PREFIX + token);
-        res.addHeader("UserID", userDto.getUserId());
+        res.addHeader("UserID", userPrincipal.getUserId());
+
+        recordLogin(req, "success");
+    }
+
+    @Override
+    protected void unsuccessfulAuthentication(HttpServletRequest req,
+                                              HttpServletResponse res,
+                                              AuthenticationException failed) throws IOException, ServletException {
+        recordLogin(req, "failure");
+        super.unsuccessfulAuthentication(req, res, failed);
+    }
+
+    private void recordLogin(HttpServletRequest req, String result) {
+        Timer.Sample sample = (Timer.Sample) req.getAttribute(LOGIN_SAMPLE_ATTRIBUTE);
+        if (sample == null)
+            return;
 
+        req.removeAttribute(LOGIN_SAMPLE_ATTRIBUTE);
+        sample.stop(Timer.builder("users.login")
+                .description("Login attempts by result")
+                .tag("result", result)
+                .register(meterRegistry));
     }
 
 
@@ -1,7 +1,5 @@
 package blog.yrol.sceurity;
 
-import blog.yrol.entity.UsersRepository;
-import io.jsonwebtoken.Jwts;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -15,12 +13,16 @@ import java.io.IOException;
 
 public class AuthorizationFilter extends BasicAuthenticationFilter {
 
-    UsersRepository userRepository;
+    TokenService tokenService;
+
+    VerifiedTokenCache verifiedTokenCache;
 
     public AuthorizationFilter(AuthenticationManager authManager,
-                               UsersRepository userRepository) {
+                               TokenService tokenService,
+                               VerifiedTokenCache verifiedTokenCache) {
         super(authManager);
-        this.userRepository = userRepository;
+        this.tokenService = tokenService;
+        this.verifiedTokenCache = verifiedTokenCache;
     }
 
     @Override
@@ -47,11 +49,10 @@ public class AuthorizationFilter extends BasicAuthenticationFilter {
 
             token = token.replace(SecurityConstants.TOKEN_PREFIX, "");
 
-            String user = Jwts.parser()
-                    .setSigningKey( SecurityConstants.TOKEN_SECRET)
-                    .parseClaimsJws( token )
-                    .getBody()
-                    .getSubject();
+            /*
+             * The signature is only verified the first time a token is seen, after that the subject comes from the cache
+             */
+            String user = verifiedTokenCache.getSubject(token, tokenService::verify);
 
             if (user != null) {
                 return new UsernamePasswordAuthenticationToken(user, null, null);
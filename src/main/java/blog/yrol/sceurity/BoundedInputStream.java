@@ -0,0 +1,57 @@
+package blog.yrol.sceurity;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Request body stream failing with TooLargeException as soon as more than the allowed number of bytes is read,
+ * so bodies without a Content-Length (chunked) can't be used to make the filters buffer or parse unbounded input.
+ **/
+public class BoundedInputStream extends FilterInputStream {
+
+    private final long maxBytes;
+
+    private long bytesRead;
+
+    public BoundedInputStream(InputStream inputStream, long maxBytes) {
+        super(inputStream);
+        this.maxBytes = maxBytes;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b >= 0)
+            count(1);
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int n = super.read(b, off, len);
+        if (n > 0)
+            count(n);
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = super.skip(n);
+        count(skipped);
+        return skipped;
+    }
+
+    private void count(long n) throws TooLargeException {
+        bytesRead += n;
+        if (bytesRead > maxBytes)
+            throw new TooLargeException(maxBytes);
+    }
+
+    public static class TooLargeException extends IOException {
+
+        public TooLargeException(long maxBytes) {
+            super("Request body larger than " + maxBytes + " bytes");
+        }
+    }
+}
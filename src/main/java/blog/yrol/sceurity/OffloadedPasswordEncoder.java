@@ -0,0 +1,35 @@
+package blog.yrol.sceurity;
+
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+/**
+ * Password encoder used by the login (DaoAuthenticationProvider), verifying passwords on the bounded
+ * PasswordHashingExecutor instead of the request thread.
+ **/
+public class OffloadedPasswordEncoder implements PasswordEncoder {
+
+    private final PasswordHashingExecutor passwordHashingExecutor;
+
+    public OffloadedPasswordEncoder(PasswordHashingExecutor passwordHashingExecutor) {
+        this.passwordHashingExecutor = passwordHashingExecutor;
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return passwordHashingExecutor.encode(rawPassword);
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return passwordHashingExecutor.matches(rawPassword, encodedPassword);
+    }
+
+    /*
+     * Outdated hashes are rehashed after a successful login, skipped while the hashing pool is busy
+     * so the extra hash can't get the login rejected
+     */
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return passwordHashingExecutor.upgradeEncoding(encodedPassword) && passwordHashingExecutor.hasSpareCapacity();
+    }
+}
@@ -0,0 +1,62 @@
+package blog.yrol.sceurity;
+
+import org.springframework.security.crypto.argon2.Argon2PasswordEncoder;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.crypto.password.Pbkdf2PasswordEncoder;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Builds the delegating password encoder: new hashes are prefixed with the algorithm ("{bcrypt}...", "{argon2}..." & etc)
+ * so the algorithm and its work factor can change per environment while the existing hashes keep matching.
+ * Hashes stored before the prefixes were introduced are raw BCrypt output and are matched with BCrypt.
+ * DelegatingPasswordEncoder.upgradeEncoding() flags hashes using another algorithm (or, for BCrypt and Argon2, weaker parameters),
+ * those are rehashed on the next successful login (see UsersServiceImpl.updatePassword).
+ **/
+public final class PasswordEncoders {
+
+    public static final String BCRYPT = "bcrypt";
+    public static final String PBKDF2 = "pbkdf2";
+    public static final String ARGON2 = "argon2";
+
+    private static final int PBKDF2_SALT_LENGTH = 16;
+    private static final int PBKDF2_HASH_WIDTH = 256;
+
+    private static final int ARGON2_SALT_LENGTH = 16;
+    private static final int ARGON2_HASH_LENGTH = 32;
+    private static final int ARGON2_PARALLELISM = 1;
+
+    private PasswordEncoders() {
+    }
+
+    /**
+     * @param algorithm        the algorithm used for new hashes (bcrypt, pbkdf2 or argon2)
+     * @param bcryptStrength   BCrypt log rounds (4 - 31)
+     * @param pbkdf2Iterations PBKDF2-HMAC-SHA256 iterations
+     * @param argon2MemoryKb   Argon2id memory cost in KB
+     * @param argon2Iterations Argon2id iterations
+     **/
+    public static PasswordEncoder delegating(String algorithm, int bcryptStrength, int pbkdf2Iterations,
+                                             int argon2MemoryKb, int argon2Iterations) {
+        BCryptPasswordEncoder bCryptPasswordEncoder = new BCryptPasswordEncoder(bcryptStrength);
+
+        Pbkdf2PasswordEncoder pbkdf2PasswordEncoder = new Pbkdf2PasswordEncoder("", PBKDF2_SALT_LENGTH, pbkdf2Iterations, PBKDF2_HASH_WIDTH);
+        pbkdf2PasswordEncoder.setAlgorithm(Pbkdf2PasswordEncoder.SecretKeyFactoryAlgorithm.PBKDF2WithHmacSHA256);
+
+        Map<String, PasswordEncoder> encoders = new HashMap<>();
+        encoders.put(BCRYPT, bCryptPasswordEncoder);
+        encoders.put(PBKDF2, pbkdf2PasswordEncoder);
+        encoders.put(ARGON2, new Argon2PasswordEncoder(ARGON2_SALT_LENGTH, ARGON2_HASH_LENGTH, ARGON2_PARALLELISM,
+                argon2MemoryKb, argon2Iterations));
+
+        if (!encoders.containsKey(algorithm))
+            throw new IllegalArgumentException("Unsupported password encoder: " + algorithm);
+
+        DelegatingPasswordEncoder passwordEncoder = new DelegatingPasswordEncoder(algorithm, encoders);
+        passwordEncoder.setDefaultPasswordEncoderForMatches(bCryptPasswordEncoder);
+        return passwordEncoder;
+    }
+}
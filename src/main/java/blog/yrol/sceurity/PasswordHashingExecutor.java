@@ -0,0 +1,147 @@
+package blog.yrol.sceurity;
+
+import blog.yrol.exception.PasswordHashingRejectedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Runs all the password hashing work (signup, bulk imports and login verification) on a dedicated, bounded pool,
+ * so hashing load can't pin every request thread and starve the other endpoints.
+ * The concurrency is capped by the pool size (CPU count by default) and waiting work by the queue capacity,
+ * once both are exhausted new work is rejected right away with a PasswordHashingRejectedException (503).
+ * Queue depth, active threads, hash time and rejections are published as "password.hashing.*" metrics.
+ **/
+@Component
+public class PasswordHashingExecutor implements DisposableBean {
+
+    private final PasswordEncoder passwordEncoder;
+
+    private final ThreadPoolExecutor executor;
+
+    private final int poolSize;
+
+    private final Timer encodeTimer;
+
+    private final Timer matchesTimer;
+
+    private final Counter rejectedCounter;
+
+    public PasswordHashingExecutor(PasswordEncoder passwordEncoder,
+                                   @Value("${users.password-hashing.threads:0}") int threads,
+                                   @Value("${users.password-hashing.queue-capacity:100}") int queueCapacity,
+                                   MeterRegistry meterRegistry) {
+        this.passwordEncoder = passwordEncoder;
+        this.poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+
+        AtomicInteger threadNumber = new AtomicInteger();
+
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "password-hashing-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+
+        Gauge.builder("password.hashing.queue.size", executor, pool -> pool.getQueue().size())
+                .description("Password hashing tasks waiting for a thread")
+                .register(meterRegistry);
+        Gauge.builder("password.hashing.active", executor, ThreadPoolExecutor::getActiveCount)
+                .description("Password hashing threads currently busy")
+                .register(meterRegistry);
+
+        this.encodeTimer = Timer.builder("password.hashing").tag("operation", "encode").register(meterRegistry);
+        this.matchesTimer = Timer.builder("password.hashing").tag("operation", "matches").register(meterRegistry);
+        this.rejectedCounter = Counter.builder("password.hashing.rejected")
+                .description("Password hashing tasks rejected because the pool was saturated")
+                .register(meterRegistry);
+    }
+
+    public String encode(CharSequence rawPassword) {
+        return join(submit(() -> encodeTimer.record(() -> passwordEncoder.encode(rawPassword))));
+    }
+
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return join(submit(() -> matchesTimer.record(() -> passwordEncoder.matches(rawPassword, encodedPassword))));
+    }
+
+    /**
+     * Only parses the stored hash, no need to offload it
+     **/
+    public boolean upgradeEncoding(String encodedPassword) {
+        return passwordEncoder.upgradeEncoding(encodedPassword);
+    }
+
+    /**
+     * True when nothing is waiting for a hashing thread, optional work (i.e. rehashing on login) is only done then
+     **/
+    public boolean hasSpareCapacity() {
+        return executor.getQueue().isEmpty();
+    }
+
+    /**
+     * Returns the encoded passwords in the same order as the given raw passwords.
+     * Passwords are submitted a pool size at a time, so one bulk request can't fill the whole queue.
+     **/
+    public List<String> encodeAll(List<String> rawPasswords) {
+        List<String> returnValue = new ArrayList<>(rawPasswords.size());
+
+        for (int from = 0; from < rawPasswords.size(); from += poolSize) {
+            List<CompletableFuture<String>> encodedPasswords = new ArrayList<>(poolSize);
+            for (String rawPassword : rawPasswords.subList(from, Math.min(from + poolSize, rawPasswords.size()))) {
+                encodedPasswords.add(submit(() -> encodeTimer.record(() -> passwordEncoder.encode(rawPassword))));
+            }
+
+            for (CompletableFuture<String> encodedPassword : encodedPasswords) {
+                returnValue.add(join(encodedPassword));
+            }
+        }
+
+        return returnValue;
+    }
+
+    private <T> CompletableFuture<T> submit(Supplier<T> task) {
+        try {
+            return CompletableFuture.supplyAsync(task, executor);
+        } catch (RejectedExecutionException e) {
+            rejectedCounter.increment();
+            throw new PasswordHashingRejectedException("Password hashing is overloaded, please retry later");
+        }
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdown();
+    }
+
+    /*
+     * Rethrowing the task's own exception instead of the CompletionException wrapper
+     */
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw e;
+        }
+    }
+}
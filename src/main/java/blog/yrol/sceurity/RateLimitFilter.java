@@ -0,0 +1,273 @@
+package blog.yrol.sceurity;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletException;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.SequenceInputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * Throttles logins and signups (POST /users/login and POST /users) before they reach the password hashing and the DB.
+ * Every request takes a token from its client IP bucket and then from the bucket of the email in the JSON body,
+ * an empty bucket ends the request with 429 and Retry-After. The IP is checked first, so throttled clients don't get their body read.
+ * The body is only peeked at: the bytes read until the email field are replayed to the filters / controllers after this one,
+ * followed by the rest of the (size bounded) request stream, bodies over the maximum size are answered with 413.
+ * Rejections are counted by the "users.rate.limited" metric (limit=ip|email), oversized bodies by "users.body.too.large".
+ **/
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    /*
+     * The request stream is handed on after the email is found, the parser mustn't close it
+     */
+    private static final JsonFactory JSON_FACTORY = new JsonFactory().disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+
+    private final RateLimiter ipRateLimiter;
+
+    private final RateLimiter emailRateLimiter;
+
+    private final Counter ipLimitedCounter;
+
+    private final Counter emailLimitedCounter;
+
+    private final Counter tooLargeCounter;
+
+    private final long maxBodyBytes;
+
+    public RateLimitFilter(RateLimiter ipRateLimiter, RateLimiter emailRateLimiter, long maxBodyBytes, MeterRegistry meterRegistry) {
+        this.ipRateLimiter = ipRateLimiter;
+        this.emailRateLimiter = emailRateLimiter;
+        this.maxBodyBytes = maxBodyBytes;
+        this.ipLimitedCounter = Counter.builder("users.rate.limited").tag("limit", "ip")
+                .description("Login / signup requests rejected by the rate limiter")
+                .register(meterRegistry);
+        this.emailLimitedCounter = Counter.builder("users.rate.limited").tag("limit", "email")
+                .description("Login / signup requests rejected by the rate limiter")
+                .register(meterRegistry);
+        this.tooLargeCounter = Counter.builder("users.body.too.large")
+                .description("Login / signup requests rejected for a body over the maximum size")
+                .register(meterRegistry);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        if (!HttpMethod.POST.matches(request.getMethod()))
+            return true;
+
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        return !path.equals("/users") && !path.equals("/users/login");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        long waitNanos = ipRateLimiter.tryAcquire(request.getRemoteAddr());
+        if (waitNanos > 0) {
+            ipLimitedCounter.increment();
+            reject(response, waitNanos);
+            return;
+        }
+
+        if (request.getContentLengthLong() > maxBodyBytes) {
+            rejectTooLarge(response);
+            return;
+        }
+
+        BoundedInputStream body = new BoundedInputStream(request.getInputStream(), maxBodyBytes);
+        ByteArrayOutputStream peekedBody = new ByteArrayOutputStream();
+        String email;
+        try {
+            email = readEmail(new PeekingInputStream(body, peekedBody));
+        } catch (BoundedInputStream.TooLargeException e) {
+            rejectTooLarge(response);
+            return;
+        }
+
+        if (email != null) {
+            waitNanos = emailRateLimiter.tryAcquire(email.toLowerCase(Locale.ROOT));
+            if (waitNanos > 0) {
+                emailLimitedCounter.increment();
+                reject(response, waitNanos);
+                return;
+            }
+        }
+
+        chain.doFilter(new PeekedBodyRequest(request, peekedBody.toByteArray(), body), response);
+    }
+
+    private void rejectTooLarge(HttpServletResponse response) {
+        tooLargeCounter.increment();
+        response.setStatus(HttpStatus.PAYLOAD_TOO_LARGE.value());
+    }
+
+    private static void reject(HttpServletResponse response, long waitNanos) {
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(RateLimiter.retryAfterSeconds(waitNanos)));
+    }
+
+    /*
+     * Only looks for the top level "email" field with the streaming parser, malformed bodies are left for the next filters to reject.
+     * Stops reading at the email field, only an oversized body is reported (TooLargeException)
+     */
+    private static String readEmail(InputStream body) throws BoundedInputStream.TooLargeException {
+        try (JsonParser parser = JSON_FACTORY.createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT)
+                return null;
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+
+                if ("email".equals(field))
+                    return value == JsonToken.VALUE_STRING ? parser.getText() : null;
+
+                parser.skipChildren();
+            }
+        } catch (BoundedInputStream.TooLargeException e) {
+            throw e;
+        } catch (IOException e) {
+            return null;
+        }
+
+        return null;
+    }
+
+    /*
+     * Keeps a copy of the bytes read through it, so they can be replayed
+     */
+    private static class PeekingInputStream extends FilterInputStream {
+
+        private final ByteArrayOutputStream peeked;
+
+        PeekingInputStream(InputStream inputStream, ByteArrayOutputStream peeked) {
+            super(inputStream);
+            this.peeked = peeked;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0)
+                peeked.write(b);
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0)
+                peeked.write(b, off, n);
+            return n;
+        }
+
+        /*
+         * Skipped bytes are read instead, so they're replayed as well
+         */
+        @Override
+        public long skip(long n) throws IOException {
+            if (n <= 0)
+                return 0;
+            return Math.max(read(new byte[(int) Math.min(n, 512)]), 0);
+        }
+    }
+
+    /*
+     * Replays the bytes peeked at by the filter, then reads on from the request stream
+     */
+    private static class PeekedBodyRequest extends HttpServletRequestWrapper {
+
+        private final byte[] peekedBody;
+
+        private final InputStream body;
+
+        private ServletInputStream servletInputStream;
+
+        PeekedBodyRequest(HttpServletRequest request, byte[] peekedBody, InputStream body) {
+            super(request);
+            this.peekedBody = peekedBody;
+            this.body = body;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() throws IOException {
+            if (servletInputStream != null)
+                return servletInputStream;
+
+            ServletInputStream requestInputStream = super.getInputStream();
+            ByteArrayInputStream peekedInputStream = new ByteArrayInputStream(peekedBody);
+            InputStream inputStream = new SequenceInputStream(peekedInputStream, body);
+
+            servletInputStream = new ServletInputStream() {
+                @Override
+                public boolean isFinished() {
+                    return peekedInputStream.available() == 0 && requestInputStream.isFinished();
+                }
+
+                @Override
+                public boolean isReady() {
+                    return peekedInputStream.available() > 0 || requestInputStream.isReady();
+                }
+
+                /*
+                 * A body read up to its end by the peek is already in memory, it is available right away.
+                 * Otherwise the container calls the listener as the rest of the body arrives (the peeked bytes come first)
+                 */
+                @Override
+                public void setReadListener(ReadListener readListener) {
+                    if (!requestInputStream.isFinished()) {
+                        requestInputStream.setReadListener(readListener);
+                        return;
+                    }
+
+                    try {
+                        if (!isFinished())
+                            readListener.onDataAvailable();
+                        if (isFinished())
+                            readListener.onAllDataRead();
+                    } catch (IOException e) {
+                        readListener.onError(e);
+                    }
+                }
+
+                @Override
+                public int read() throws IOException {
+                    return inputStream.read();
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException {
+                    return inputStream.read(b, off, len);
+                }
+            };
+            return servletInputStream;
+        }
+
+        @Override
+        public BufferedReader getReader() throws IOException {
+            Charset charset = getCharacterEncoding() == null ? StandardCharsets.UTF_8 : Charset.forName(getCharacterEncoding());
+            return new BufferedReader(new InputStreamReader(getInputStream(), charset));
+        }
+    }
+}
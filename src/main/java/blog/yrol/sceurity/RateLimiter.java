@@ -0,0 +1,77 @@
+package blog.yrol.sceurity;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token buckets per key (i.e. client IP or email), lock-free: every bucket is a single AtomicLong updated with compare-and-set.
+ * A bucket holds up to "burst" tokens and gets one back every 1 / rate, it's stored as the time at which it will be full again
+ * (generic cell rate algorithm), so refilling needs no background work.
+ * Buckets are kept in a Caffeine map (lock striped, amortized eviction): a bucket untouched for long enough to be full again
+ * is dropped, the map is also bounded in size. A dropped bucket just starts full again.
+ **/
+public class RateLimiter {
+
+    private final long intervalNanos;
+
+    private final long burstNanos;
+
+    private final Ticker ticker;
+
+    private final Cache<String, AtomicLong> buckets;
+
+    public RateLimiter(int requestsPerMinute, int burst, long maximumKeys, Ticker ticker) {
+        if (requestsPerMinute <= 0 || burst <= 0)
+            throw new IllegalArgumentException("Invalid rate limit: " + requestsPerMinute + " per minute, burst " + burst);
+
+        this.intervalNanos = TimeUnit.MINUTES.toNanos(1) / requestsPerMinute;
+        this.burstNanos = intervalNanos * burst;
+        this.ticker = ticker;
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(maximumKeys)
+                .expireAfterAccess(Duration.ofNanos(burstNanos))
+                .ticker(ticker)
+                .build();
+    }
+
+    /**
+     * Takes a token from the key's bucket. Returns 0 when allowed, otherwise the time (in nanoseconds) until a token is available
+     **/
+    public long tryAcquire(String key) {
+        long now = ticker.read();
+        // New buckets start full. The ticker's origin is arbitrary (System.nanoTime() may be negative), so they're seeded from it
+        AtomicLong bucket = buckets.get(key, k -> new AtomicLong(now - burstNanos));
+
+        while (true) {
+            long fullAt = bucket.get();
+            long newFullAt = Math.max(fullAt, now) + intervalNanos;
+
+            long waitNanos = newFullAt - now - burstNanos;
+            if (waitNanos > 0)
+                return waitNanos;
+
+            if (bucket.compareAndSet(fullAt, newFullAt))
+                return 0;
+        }
+    }
+
+    /**
+     * Retry-After value (whole seconds, at least 1) for the time returned by tryAcquire()
+     **/
+    public static long retryAfterSeconds(long waitNanos) {
+        return Math.max(1, (waitNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+    }
+
+    /**
+     * Buckets kept, after dropping the expired ones
+     **/
+    public long estimatedKeys() {
+        buckets.cleanUp();
+        return buckets.estimatedSize();
+    }
+}
@@ -4,4 +4,5 @@ public class SecurityConstants {
     public static final String TOKEN_PREFIX = "Bearer ";
     public static final String HEADER_STRING = "Authorization";
     public static final String TOKEN_SECRET = "qaWr3Dwa";
+    public static final long EXPIRATION_TIME = 864000000; // 10 days
 }
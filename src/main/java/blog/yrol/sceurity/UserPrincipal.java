@@ -0,0 +1,37 @@
+package blog.yrol.sceurity;
+
+import lombok.Getter;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+
+import java.util.Collection;
+
+/**
+ * Authenticated user carrying the public user details loaded during authentication,
+ * so the login success handler doesn't need to look the user up again.
+ **/
+@Getter
+public class UserPrincipal extends User {
+
+    private static final long serialVersionUID = -2871512645370466217L;
+
+    private final String userId;
+    private final String firstName;
+    private final String lastName;
+
+    public UserPrincipal(String email,
+                         String encryptedPassword,
+                         Collection<? extends GrantedAuthority> authorities,
+                         String userId,
+                         String firstName,
+                         String lastName) {
+        super(email, encryptedPassword, authorities);
+        this.userId = userId;
+        this.firstName = firstName;
+        this.lastName = lastName;
+    }
+
+    public String getEmail() {
+        return getUsername();
+    }
+}
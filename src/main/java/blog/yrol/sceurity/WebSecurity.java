@@ -1,8 +1,12 @@
 package blog.yrol.sceurity;
 
 
-import blog.yrol.entity.UsersRepository;
+import blog.yrol.service.UsersService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Ticker;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.http.HttpMethod;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -11,19 +15,58 @@ import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
+import org.springframework.util.unit.DataSize;
 
 @EnableWebSecurity
 public class WebSecurity {
 
     @Autowired
-    UsersRepository usersRepository;
+    TokenService tokenService;
+
+    @Autowired
+    VerifiedTokenCache verifiedTokenCache;
+
+    @Autowired
+    UsersService usersService;
+
+    @Autowired
+    PasswordHashingExecutor passwordHashingExecutor;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Value("${users.login.max-body-size:4KB}")
+    DataSize loginMaxBodySize;
+
+    @Value("${users.rate-limit.enabled:true}")
+    boolean rateLimitEnabled;
+
+    @Value("${users.rate-limit.ip.requests-per-minute:60}")
+    int ipRequestsPerMinute;
+
+    @Value("${users.rate-limit.ip.burst:20}")
+    int ipBurst;
+
+    @Value("${users.rate-limit.email.requests-per-minute:10}")
+    int emailRequestsPerMinute;
+
+    @Value("${users.rate-limit.email.burst:5}")
+    int emailBurst;
+
+    @Value("${users.rate-limit.maximum-keys:100000}")
+    long rateLimitMaximumKeys;
 
     @Bean
     public SecurityFilterChain configure(HttpSecurity http) throws Exception {
 
         // Configure AuthenticationManagerBuilder
         AuthenticationManagerBuilder authenticationManagerBuilder = http.getSharedObject(AuthenticationManagerBuilder.class);
-        //authenticationManagerBuilder.userDetailsService(userDetailsService).passwordEncoder(bCryptPasswordEncoder);
+        // Login password checks run on the bounded hashing pool (see PasswordHashingExecutor)
+        authenticationManagerBuilder.userDetailsService(usersService).passwordEncoder(new OffloadedPasswordEncoder(passwordHashingExecutor));
 
         // Get AuthenticationManager
         AuthenticationManager authenticationManager = authenticationManagerBuilder.build();
@@ -35,22 +78,36 @@ public class WebSecurity {
                 .permitAll()
                 .antMatchers(HttpMethod.POST, "/users/login")
                 .permitAll()
+                .antMatchers(HttpMethod.GET, "/actuator/health", "/actuator/prometheus")
+                .permitAll()
                 .anyRequest().authenticated().and()
                 .addFilter(getAuthenticationFilter(authenticationManager))
-                .addFilter(new AuthorizationFilter(authenticationManager, usersRepository))
+                .addFilter(new AuthorizationFilter(authenticationManager, tokenService, verifiedTokenCache))
                 .authenticationManager(authenticationManager)
                 .sessionManagement()
                 .sessionCreationPolicy(SessionCreationPolicy.STATELESS);
 
+        // Logins and signups are throttled before AuthenticationFilter (see RateLimitFilter)
+        if (rateLimitEnabled)
+            http.addFilterBefore(getRateLimitFilter(), UsernamePasswordAuthenticationFilter.class);
+
         http.headers().frameOptions().disable();
 
         return http.build();
     }
 
     protected AuthenticationFilter getAuthenticationFilter(AuthenticationManager authenticationManager) throws Exception {
-        final AuthenticationFilter filter = new AuthenticationFilter(authenticationManager);
+        final AuthenticationFilter filter = new AuthenticationFilter(authenticationManager, tokenService, meterRegistry, objectMapper,
+                loginMaxBodySize.toBytes());
         filter.setFilterProcessesUrl("/users/login");
         return filter;
     }
 
+    protected RateLimitFilter getRateLimitFilter() {
+        return new RateLimitFilter(
+                new RateLimiter(ipRequestsPerMinute, ipBurst, rateLimitMaximumKeys, Ticker.systemTicker()),
+                new RateLimiter(emailRequestsPerMinute, emailBurst, rateLimitMaximumKeys, Ticker.systemTicker()),
+                loginMaxBodySize.toBytes(), meterRegistry);
+    }
+
 }
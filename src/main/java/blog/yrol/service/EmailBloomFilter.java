@@ -0,0 +1,178 @@
+package blog.yrol.service;
+
+import blog.yrol.entity.ReadWriteRoutingDataSource;
+import blog.yrol.entity.UserShards;
+import blog.yrol.entity.UsersRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * In-memory Bloom filter of the registered emails, so logins and signups for emails that were never registered
+ * (most of the failed logins) can skip the DB lookup. A "false" from mightContain() is definite, a "true" may be a false positive
+ * (at most the configured rate once the expected number of emails is reached) and still needs the DB lookup.
+ * The filter is loaded from the users table once the application is ready, until then every email might exist.
+ * New emails are added as users are created. The filter is local to this instance: users created through another instance
+ * can't log in on this one until it restarts, so it is off by default (users.email-filter.enabled) and only meant for a single instance.
+ * A warning is logged when it is enabled along with a read replica or shards, which usually mean more than one instance.
+ * Memory used and emails added are published as "users.email.filter.*" metrics.
+ **/
+@Component
+public class EmailBloomFilter {
+
+    private static final Logger LOG = LoggerFactory.getLogger(EmailBloomFilter.class);
+
+    private final UsersRepository usersRepository;
+
+    private final UserShards userShards;
+
+    private final boolean enabled;
+
+    private final AtomicLongArray bits;
+
+    private final long bitCount;
+
+    private final int hashFunctions;
+
+    private final AtomicLong emails = new AtomicLong();
+
+    private volatile boolean ready;
+
+    public EmailBloomFilter(UsersRepository usersRepository, UserShards userShards,
+                            @Value("${users.email-filter.enabled:false}") boolean enabled,
+                            @Value("${users.datasource.replica.url:}") String replicaUrl,
+                            @Value("${users.email-filter.expected-emails:1000000}") long expectedEmails,
+                            @Value("${users.email-filter.false-positive-rate:0.01}") double falsePositiveRate,
+                            MeterRegistry meterRegistry) {
+        if (expectedEmails <= 0 || falsePositiveRate <= 0 || falsePositiveRate >= 1)
+            throw new IllegalArgumentException("Invalid email filter size: " + expectedEmails + " emails at " + falsePositiveRate);
+
+        this.usersRepository = usersRepository;
+        this.userShards = userShards;
+        this.enabled = enabled;
+
+        if (enabled && (!replicaUrl.isEmpty() || userShards.getShardCount() > 1))
+            LOG.warn("The email filter is local to this instance but a read replica or shards are configured, users created through other "
+                    + "instances won't be able to log in here until it restarts. Set users.email-filter.enabled=false unless this is the only instance");
+
+        /*
+         * Optimal size for n elements at rate p: m = -n ln(p) / ln(2)^2 bits and k = m / n ln(2) hash functions
+         */
+        long words = (long) Math.ceil(-expectedEmails * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)) / Long.SIZE);
+        this.bits = new AtomicLongArray(enabled ? Math.toIntExact(words) : 0);
+        this.bitCount = words * Long.SIZE;
+        this.hashFunctions = Math.max(1, (int) Math.round((double) bitCount / expectedEmails * Math.log(2)));
+
+        Gauge.builder("users.email.filter.memory", bits, array -> (double) array.length() * Long.BYTES)
+                .description("Memory used by the registered emails Bloom filter")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("users.email.filter.emails", emails, AtomicLong::get)
+                .description("Emails added to the registered emails Bloom filter")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Streams every registered email (of every shard) into the filter, emails added meanwhile (new users) are kept
+     **/
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        if (!enabled)
+            return;
+
+        /*
+         * Read from the primary, emails missing on a lagging replica would be ruled out
+         */
+        userShards.forEachShard(() -> ReadWriteRoutingDataSource.onPrimary(() -> {
+            usersRepository.forEachEmail(this::put);
+            return null;
+        }));
+
+        ready = true;
+        LOG.info("Email filter loaded with {} emails ({} bytes, {} hash functions)", emails.get(), bits.length() * Long.BYTES, hashFunctions);
+    }
+
+    public void put(String email) {
+        if (!enabled || email == null)
+            return;
+
+        long hash1 = mix(hash(email));
+        long hash2 = mix(hash1) | 1;
+
+        for (int i = 0; i < hashFunctions; i++) {
+            setBit(Math.floorMod(hash1 + i * hash2, bitCount));
+        }
+
+        emails.incrementAndGet();
+    }
+
+    /**
+     * False only when the email was definitely never registered
+     **/
+    public boolean mightContain(String email) {
+        if (!enabled || !ready)
+            return true;
+
+        if (email == null)
+            return false;
+
+        long hash1 = mix(hash(email));
+        long hash2 = mix(hash1) | 1;
+
+        for (int i = 0; i < hashFunctions; i++) {
+            long bit = Math.floorMod(hash1 + i * hash2, bitCount);
+            if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0)
+                return false;
+        }
+
+        return true;
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    private void setBit(long bit) {
+        int index = (int) (bit >>> 6);
+        long mask = 1L << bit;
+
+        long word;
+        do {
+            word = bits.get(index);
+            if ((word & mask) != 0)
+                return;
+        } while (!bits.compareAndSet(index, word, word | mask));
+    }
+
+    /*
+     * 64-bit FNV-1a over the email characters
+     */
+    private static long hash(String email) {
+        long hash = 0xCBF29CE484222325L;
+        for (int i = 0; i < email.length(); i++) {
+            hash ^= email.charAt(i);
+            hash *= 0x100000001B3L;
+        }
+        return hash;
+    }
+
+    /*
+     * Murmur3 finalizer, spreads the hash over all the bits. The k bit indexes come from two mixed hashes (double hashing)
+     */
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,35 @@
+package blog.yrol.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Emails of the users created or updated by this instance within the last max-lag, their lookups go to the primary
+ * so the client which just signed up (or logged in with a rehashed password) reads its own write even when the replica lags.
+ * Only needed with a read replica (see ReadWriteDataSourceConfiguration), harmless otherwise.
+ **/
+@Component
+public class RecentWrites {
+
+    private final Cache<String, Boolean> emails;
+
+    public RecentWrites(@Value("${users.datasource.replica.max-lag:5s}") Duration maxLag,
+                        @Value("${users.datasource.replica.maximum-recent-writes:100000}") long maximumSize) {
+        this.emails = Caffeine.newBuilder()
+                .expireAfterWrite(maxLag)
+                .maximumSize(maximumSize)
+                .build();
+    }
+
+    public void add(String email) {
+        emails.put(email, Boolean.TRUE);
+    }
+
+    public boolean contains(String email) {
+        return emails.getIfPresent(email) != null;
+    }
+}
@@ -0,0 +1,101 @@
+package blog.yrol.service;
+
+import blog.yrol.shared.UserDto;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Read-through cache of users by email, in front of the DB lookups done for logins and user details.
+ * Missing users are cached as well (for a shorter time), so repeated logins with unknown emails don't query the DB each time.
+ * Concurrent misses for the same email wait for a single lookup. Entries are bounded in size and expire after a TTL,
+ * created / updated users are written through (users created in bulk are only invalidated). Hit / miss counts are published as "cache.*" metrics.
+ **/
+@Component
+public class UserCache {
+
+    public static final String CACHE_NAME = "users";
+
+    private final Cache<String, Optional<UserDto>> cache;
+
+    public UserCache(@Value("${users.user-cache.maximum-size:10000}") long maximumSize,
+                     @Value("${users.user-cache.ttl:10m}") Duration ttl,
+                     @Value("${users.user-cache.negative-ttl:30s}") Duration negativeTtl,
+                     MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(new UserExpiry(ttl.toNanos(), negativeTtl.toNanos()))
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+    }
+
+    /**
+     * Returns a copy of the cached user, calling the loader (null for a missing user) on a miss.
+     * Exceptions thrown by the loader are propagated and nothing is cached.
+     **/
+    public Optional<UserDto> get(String email, Function<String, UserDto> loader) {
+        return cache.get(email, key -> Optional.ofNullable(loader.apply(key)))
+                .map(UserCache::copy);
+    }
+
+    /**
+     * Write-through, also replaces a cached miss for the same email
+     **/
+    public void put(UserDto user) {
+        cache.put(user.getEmail(), Optional.of(copy(user)));
+    }
+
+    public void invalidate(String email) {
+        cache.invalidate(email);
+    }
+
+    /*
+     * Callers get their own copy, so changing a returned DTO can't change the cached one
+     */
+    private static UserDto copy(UserDto user) {
+        UserDto returnValue = new UserDto();
+        BeanUtils.copyProperties(user, returnValue);
+        return returnValue;
+    }
+
+    /*
+     * Missing users expire sooner, so a user created on another instance can log in shortly after
+     */
+    private static class UserExpiry implements Expiry<String, Optional<UserDto>> {
+
+        private final long ttlNanos;
+
+        private final long negativeTtlNanos;
+
+        UserExpiry(long ttlNanos, long negativeTtlNanos) {
+            this.ttlNanos = ttlNanos;
+            this.negativeTtlNanos = negativeTtlNanos;
+        }
+
+        @Override
+        public long expireAfterCreate(String key, Optional<UserDto> value, long currentTime) {
+            return value.isPresent() ? ttlNanos : negativeTtlNanos;
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, Optional<UserDto> value, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, Optional<UserDto> value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
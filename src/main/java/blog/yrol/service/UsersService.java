@@ -1,13 +1,21 @@
 package blog.yrol.service;
 
 
+import blog.yrol.shared.BulkUserResult;
 import blog.yrol.shared.UserDto;
+import blog.yrol.shared.UserSummary;
+import org.springframework.data.domain.Slice;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 
 import java.util.List;
+import java.util.function.Consumer;
 
-public interface UsersService extends UserDetailsService {
+public interface UsersService extends UserDetailsService, UserDetailsPasswordService {
     UserDto createUser(UserDto user);
-    List<UserDto> getUsers(int page, int limit);
+    List<BulkUserResult> createUsers(List<UserDto> users);
+    List<UserSummary> getUsers(int page, int limit);
+    Slice<UserSummary> getUsersAfter(long afterId, int limit);
+    void exportUsers(Consumer<UserSummary> consumer);
     UserDto getUser(String email);
 }
@@ -1,97 +1,333 @@
 package blog.yrol.service;
 
+import blog.yrol.entity.ReadWriteRoutingDataSource;
 import blog.yrol.entity.UserEntity;
+import blog.yrol.entity.UserShards;
 import blog.yrol.entity.UsersRepository;
+import blog.yrol.exception.PageTooDeepException;
 import blog.yrol.exception.UsersServiceException;
+import blog.yrol.sceurity.PasswordHashingExecutor;
+import blog.yrol.sceurity.UserPrincipal;
+import blog.yrol.shared.BulkUserResult;
 import blog.yrol.shared.UserDto;
-import org.modelmapper.ModelMapper;
-import org.modelmapper.TypeToken;
-import org.springframework.beans.BeanUtils;
+import blog.yrol.shared.UserMapper;
+import blog.yrol.shared.UserSummary;
+import io.micrometer.core.annotation.Timed;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
-import org.springframework.security.core.userdetails.User;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
-import java.lang.reflect.Type;
+import javax.persistence.EntityManager;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
-import java.util.UUID;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Consumer;
 
+/*
+ * Every public method is timed as "users.service" (tagged with the method name)
+ */
 @Service("usersService")
+@Timed("users.service")
 public class UsersServiceImpl implements UsersService {
 
+    private static final Logger LOG = LoggerFactory.getLogger(UsersServiceImpl.class);
+
+    /**
+     * When sharded, offset pages can't reach past this many users (each shard loads all the users up to the page)
+     **/
+    public static final int MAX_SHARDED_OFFSET = 10_000;
+
     private UsersRepository usersRepository;
-    private BCryptPasswordEncoder bCryptPasswordEncoder;
+    private UserMapper userMapper;
+    private EntityManager entityManager;
+    private PasswordHashingExecutor passwordHashingExecutor;
+    private UserCache userCache;
+    private EmailBloomFilter emailFilter;
+    private RecentWrites recentWrites;
+    private UserShards userShards;
 
     @Autowired
-    public UsersServiceImpl(UsersRepository usersRepository, BCryptPasswordEncoder bCryptPasswordEncoder) {
+    public UsersServiceImpl(UsersRepository usersRepository, UserMapper userMapper, EntityManager entityManager,
+                            PasswordHashingExecutor passwordHashingExecutor, UserCache userCache,
+                            EmailBloomFilter emailFilter, RecentWrites recentWrites, UserShards userShards) {
         this.usersRepository = usersRepository;
-        this.bCryptPasswordEncoder = bCryptPasswordEncoder;
+        this.userMapper = userMapper;
+        this.entityManager = entityManager;
+        this.passwordHashingExecutor = passwordHashingExecutor;
+        this.userCache = userCache;
+        this.emailFilter = emailFilter;
+        this.recentWrites = recentWrites;
+        this.userShards = userShards;
     }
 
+    /*
+     * The duplicate checks of the writes are made on the primary (a lagging replica could miss a just created user).
+     * Users are stored on the shard of their email (see UserShards)
+     */
     @Override
     public UserDto createUser(UserDto user) {
 
-        if (usersRepository.findByEmail(user.getEmail()) != null)
+        if (emailFilter.mightContain(user.getEmail())
+                && userShards.onShardOf(user.getEmail(),
+                        () -> ReadWriteRoutingDataSource.onPrimary(() -> usersRepository.findByEmail(user.getEmail()))) != null)
             throw new UsersServiceException("Record already exists");
 
-        ModelMapper modelMapper = new ModelMapper();
-        UserEntity userEntity = modelMapper.map(user, UserEntity.class);
+        UserEntity userEntity = userMapper.toUserEntity(user);
 
-        String publicUserId = UUID.randomUUID().toString();
+        String publicUserId = userShards.newUserId(user.getEmail());
         userEntity.setUserId(publicUserId);
-        userEntity.setEncryptedPassword(bCryptPasswordEncoder.encode(user.getPassword()));
+        userEntity.setEncryptedPassword(passwordHashingExecutor.encode(user.getPassword()));
 
-        UserEntity storedUserDetails = usersRepository.save(userEntity);
+        UserEntity storedUserDetails = userShards.onShardOf(user.getEmail(), () -> usersRepository.save(userEntity));
+        emailFilter.put(storedUserDetails.getEmail());
+        recentWrites.add(storedUserDetails.getEmail());
 
-        UserDto returnValue  = modelMapper.map(storedUserDetails, UserDto.class);
+        UserDto returnValue  = userMapper.toUserDto(storedUserDetails);
+        userCache.put(returnValue);
 
         return returnValue;
     }
 
+    /**
+     * Creates a chunk of users: one query to find the emails already registered, passwords hashed in parallel
+     * and a single batched insert. Hashing happens before the insert, so no DB connection is held meanwhile.
+     * The results are in the same order as the given users. When sharded there's one query and one insert per shard,
+     * a failing insert (i.e. shard down) only fails the users of its shard, the other shards are stored.
+     **/
     @Override
-    public List<UserDto> getUsers(int page, int limit) {
-        List<UserDto> returnValue = new ArrayList<>();
+    public List<BulkUserResult> createUsers(List<UserDto> users) {
+        /*
+         * Emails the filter rules out are new, only the others have to be checked in the DB
+         */
+        Map<Integer, Set<String>> emailsByShard = new TreeMap<>();
+        for (UserDto user : users) {
+            if (emailFilter.mightContain(user.getEmail()))
+                emailsByShard.computeIfAbsent(userShards.shardOf(user.getEmail()), shard -> new HashSet<>()).add(user.getEmail());
+        }
+
+        Set<String> existingEmails = new HashSet<>();
+        emailsByShard.forEach((shard, emails) -> existingEmails.addAll(userShards.onShard(shard,
+                () -> ReadWriteRoutingDataSource.onPrimary(() -> usersRepository.findExistingEmails(emails)))));
+
+        BulkUserResult[] results = new BulkUserResult[users.size()];
+        List<Integer> newUserIndexes = new ArrayList<>();
+        Set<String> newEmails = new HashSet<>();
+
+        for (int i = 0; i < users.size(); i++) {
+            UserDto user = users.get(i);
+
+            /*
+             * Already registered or repeated within the same request
+             */
+            if (existingEmails.contains(user.getEmail()) || !newEmails.add(user.getEmail())) {
+                results[i] = BulkUserResult.failed(BulkUserResult.Status.DUPLICATE, user, "Record already exists");
+            } else {
+                newUserIndexes.add(i);
+            }
+        }
+
+        List<String> rawPasswords = new ArrayList<>(newUserIndexes.size());
+        for (int index : newUserIndexes) {
+            rawPasswords.add(users.get(index).getPassword());
+        }
+        List<String> encryptedPasswords = passwordHashingExecutor.encodeAll(rawPasswords);
+
+        /*
+         * Indexes of the users (within newUserIndexes) by shard
+         */
+        Map<Integer, List<Integer>> newUsersByShard = new TreeMap<>();
+        List<UserEntity> userEntities = new ArrayList<>(newUserIndexes.size());
+        for (int i = 0; i < newUserIndexes.size(); i++) {
+            UserEntity userEntity = userMapper.toUserEntity(users.get(newUserIndexes.get(i)));
+            userEntity.setUserId(userShards.newUserId(userEntity.getEmail()));
+            userEntity.setEncryptedPassword(encryptedPasswords.get(i));
+            userEntities.add(userEntity);
+            newUsersByShard.computeIfAbsent(userShards.shardOf(userEntity.getEmail()), shard -> new ArrayList<>()).add(i);
+        }
+
+        newUsersByShard.forEach((shard, indexes) -> {
+            List<UserEntity> shardUsers = new ArrayList<>(indexes.size());
+            for (int i : indexes) {
+                shardUsers.add(userEntities.get(i));
+            }
+
+            Iterable<UserEntity> storedUsers;
+            try {
+                storedUsers = userShards.onShard(shard, () -> usersRepository.saveAll(shardUsers));
+            } catch (RuntimeException e) {
+                LOG.warn("Could not create {} users on shard {}", shardUsers.size(), shard, e);
+                for (int i : indexes) {
+                    int index = newUserIndexes.get(i);
+                    results[index] = BulkUserResult.failed(BulkUserResult.Status.FAILED, users.get(index), "Could not create the user");
+                }
+                return;
+            }
+
+            int i = 0;
+            for (UserEntity storedUser : storedUsers) {
+                UserDto storedUserDto = userMapper.toUserDto(storedUser);
+                emailFilter.put(storedUserDto.getEmail());
+                recentWrites.add(storedUserDto.getEmail());
+                // Bulk imports aren't cached (they'd evict the users actually logging in), only a cached miss is dropped
+                userCache.invalidate(storedUserDto.getEmail());
+                results[newUserIndexes.get(indexes.get(i++))] = BulkUserResult.created(storedUserDto);
+            }
+        });
 
+        return Arrays.asList(results);
+    }
+
+    /*
+     * Read-only transactions: Hibernate skips the flush (flush mode MANUAL) and the connection is marked read-only.
+     * When sharded every shard is asked (in parallel) for its first page * limit users and the results are merged by ID,
+     * so deep pages get more expensive with the number of shards: pages past MAX_SHARDED_OFFSET users are rejected,
+     * they have to be read with the cursor (getUsersAfter())
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public List<UserSummary> getUsers(int page, int limit) {
         if (page > 0) page -=1;
 
-        Pageable pageableRequest = PageRequest.of(page, limit);
+        if (userShards.getShardCount() == 1) {
+            Pageable pageableRequest = PageRequest.of(page, limit);
 
-        Page<UserEntity> usersPage = usersRepository.findAll(pageableRequest);
-        List<UserEntity> users = usersPage.getContent();
+            return usersRepository.findSummaries(pageableRequest);
+        }
 
-        Type listType = new TypeToken<List<UserDto>>() {}.getType();
-        returnValue = new ModelMapper().map(users, listType);
+        long pageEnd = (long) (page + 1) * limit;
+        if (pageEnd > MAX_SHARDED_OFFSET)
+            throw new PageTooDeepException("Only the first " + MAX_SHARDED_OFFSET + " users can be paged by offset, use the cursor (after) past them");
 
-        return returnValue;
+        Pageable firstPagesRequest = PageRequest.of(0, (int) pageEnd);
+        List<UserSummary> users = merge(userShards.onEveryShard(() -> usersRepository.findSummaries(firstPagesRequest)));
+
+        return users.subList(Math.min(page * limit, users.size()), Math.min((page + 1) * limit, users.size()));
     }
 
+    /*
+     * When sharded every shard is asked for the next limit users after the cursor, the first limit of the merged users are returned
+     */
     @Override
-    public UserDto getUser(String email) {
-        UserEntity userEntity = usersRepository.findByEmail(email);
+    @Transactional(readOnly = true)
+    public Slice<UserSummary> getUsersAfter(long afterId, int limit) {
+        Pageable pageableRequest = PageRequest.of(0, limit);
 
-        if (userEntity == null)
-            throw new UsernameNotFoundException(email);
+        if (userShards.getShardCount() == 1)
+            return usersRepository.findSummariesByIdGreaterThan(afterId, pageableRequest);
+
+        List<Slice<UserSummary>> slices = userShards.onEveryShard(() -> usersRepository.findSummariesByIdGreaterThan(afterId, pageableRequest));
+
+        List<List<UserSummary>> shardUsers = new ArrayList<>(slices.size());
+        boolean hasNext = false;
+        for (Slice<UserSummary> slice : slices) {
+            shardUsers.add(slice.getContent());
+            hasNext |= slice.hasNext();
+        }
+
+        List<UserSummary> users = merge(shardUsers);
+        hasNext |= users.size() > limit;
 
-        UserDto returnValue = new UserDto();
-        BeanUtils.copyProperties(userEntity, returnValue);
+        return new SliceImpl<>(users.subList(0, Math.min(limit, users.size())), pageableRequest, hasNext);
+    }
 
+    /*
+     * Merging the users of every shard (each already ordered by ID) by ID
+     */
+    private static List<UserSummary> merge(List<List<UserSummary>> shardUsers) {
+        List<UserSummary> returnValue = new ArrayList<>();
+        shardUsers.forEach(returnValue::addAll);
+        returnValue.sort(Comparator.comparingLong(UserSummary::getId));
         return returnValue;
     }
 
+    /**
+     * Streams every user to the consumer, the rows are read as UserSummary (not entities)
+     * so the persistence context (and the memory used) doesn't grow with the number of users.
+     * When sharded the shards are exported one after the other (ordered by ID within each shard).
+     **/
+    @Override
+    public void exportUsers(Consumer<UserSummary> consumer) {
+        userShards.forEachShard(() -> usersRepository.forEachSummary(consumer));
+    }
+
+    /**
+     * Served from the user cache, unknown emails are cached too so they don't reach the DB again until the entry expires.
+     * Emails ruled out by the email filter don't reach the DB at all.
+     * Not transactional so cache hits don't take a connection, the lookup itself is read-only (see UsersRepository.findByEmail()),
+     * i.e. served by the replica unless the user was just written by this instance (see RecentWrites).
+     **/
+    @Override
+    public UserDto getUser(String email) {
+        return userCache.get(email, this::findUser)
+                .orElseThrow(() -> new UsernameNotFoundException(email));
+    }
+
     @Override
     public UserDetails loadUserByUsername(String email) throws UsernameNotFoundException {
-        UserEntity userEntity = usersRepository.findByEmail(email);
+        return toUserPrincipal(getUser(email));
+    }
+
+    private UserDto findUser(String email) {
+        if (!emailFilter.mightContain(email))
+            return null;
+
+        UserEntity userEntity = userShards.onShardOf(email, () -> recentWrites.contains(email)
+                ? ReadWriteRoutingDataSource.onPrimary(() -> usersRepository.findByEmail(email))
+                : usersRepository.findByEmail(email));
+
+        return userEntity == null ? null : userMapper.toUserDto(userEntity);
+    }
+
+    /**
+     * Called by Spring Security after a successful login when the stored hash uses an outdated algorithm or work factor,
+     * the new hash is already computed with the current settings.
+     * Loaded and updated in one read-write transaction, a read-only lookup would drop the change.
+     * The transaction doesn't have a connection before the first statement, so routing within it still reaches the user's shard,
+     * the change is flushed within the routing as the lookup may not have run a statement (cached query).
+     **/
+    @Override
+    @Transactional
+    public UserDetails updatePassword(UserDetails user, String newPassword) {
+        UserEntity userEntity = userShards.onShardOf(user.getUsername(), () -> {
+            UserEntity storedUser = usersRepository.findByEmail(user.getUsername());
+
+            if (storedUser != null) {
+                storedUser.setEncryptedPassword(newPassword);
+                usersRepository.save(storedUser);
+
+                if (userShards.getShardCount() > 1)
+                    entityManager.flush();
+            }
+            return storedUser;
+        });
 
         if (userEntity == null)
-            throw new UsernameNotFoundException(email);
+            return user;
+
+        recentWrites.add(userEntity.getEmail());
+
+        UserDto updatedUser = userMapper.toUserDto(userEntity);
+        userCache.put(updatedUser);
+
+        return toUserPrincipal(updatedUser);
+    }
 
-        return new User(userEntity.getEmail(), userEntity.getEncryptedPassword(), new ArrayList<>());
+    private static UserPrincipal toUserPrincipal(UserDto user) {
+        return new UserPrincipal(user.getEmail(), user.getEncryptedPassword(), new ArrayList<>(),
+                user.getUserId(), user.getFirstName(), user.getLastName());
     }
 
 }
@@ -0,0 +1,33 @@
+package blog.yrol.shared;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Outcome of creating one user of a bulk request
+ **/
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BulkUserResult {
+
+    public enum Status {
+        CREATED,
+        DUPLICATE,
+        INVALID,
+        FAILED
+    }
+
+    private Status status;
+    private UserDto user;
+    private String message;
+
+    public static BulkUserResult created(UserDto user) {
+        return new BulkUserResult(Status.CREATED, user, null);
+    }
+
+    public static BulkUserResult failed(Status status, UserDto user, String message) {
+        return new BulkUserResult(status, user, message);
+    }
+}
@@ -0,0 +1,19 @@
+package blog.yrol.shared;
+
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Times the methods / classes annotated with @Timed: service layer ("users.service"), DTO mapping ("users.mapping")
+ * and JWT signing / verification ("jwt"). The histograms exported for them are set in application.properties.
+ **/
+@Configuration
+public class MetricsConfiguration {
+
+    @Bean
+    public TimedAspect timedAspect(MeterRegistry meterRegistry) {
+        return new TimedAspect(meterRegistry);
+    }
+}
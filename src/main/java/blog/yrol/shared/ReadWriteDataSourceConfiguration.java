@@ -0,0 +1,76 @@
+package blog.yrol.shared;
+
+import blog.yrol.entity.ReadWriteRoutingDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+
+/**
+ * Opt-in (users.datasource.replica.url) read / write split: the primary pool is configured as usual (spring.datasource.*),
+ * the replica pool gets the same Hikari settings, overridden by users.datasource.replica.hikari.*.
+ * Read-only transactions go to the replica, see ReadWriteRoutingDataSource.
+ * The query cache is turned off: it doesn't know which DB a result came from, so a miss read from a lagging replica
+ * would be served to the reads forced to the primary as well.
+ * Left out when sharded (users.sharding.urls), ShardedDataSourceConfiguration fails the startup then.
+ **/
+@Configuration
+@ConditionalOnProperty("users.datasource.replica.url")
+@ConditionalOnExpression("'${users.sharding.urls:}'.isEmpty()")
+public class ReadWriteDataSourceConfiguration {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties dataSourceProperties) {
+        return dataSourceProperties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .build();
+    }
+
+    @Bean
+    public HikariDataSource replicaDataSource(@Value("${users.datasource.replica.url}") String url,
+                                              @Value("${users.datasource.replica.username:}") String username,
+                                              @Value("${users.datasource.replica.password:}") String password,
+                                              Environment environment) {
+        HikariDataSource replicaDataSource = DataSourceBuilder.create()
+                .type(HikariDataSource.class)
+                .url(url)
+                .username(username)
+                .password(password)
+                .build();
+
+        Binder binder = Binder.get(environment);
+        binder.bind("spring.datasource.hikari", Bindable.ofInstance(replicaDataSource));
+        replicaDataSource.setPoolName(replicaDataSource.getPoolName() == null ? "replica" : replicaDataSource.getPoolName() + "-replica");
+        binder.bind("users.datasource.replica.hikari", Bindable.ofInstance(replicaDataSource));
+
+        return replicaDataSource;
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer replicaQueryCacheCustomizer() {
+        return hibernateProperties -> hibernateProperties.put(AvailableSettings.USE_QUERY_CACHE, "false");
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("primaryDataSource") DataSource primaryDataSource,
+                                 @Qualifier("replicaDataSource") DataSource replicaDataSource) {
+        return new LazyConnectionDataSourceProxy(new ReadWriteRoutingDataSource(primaryDataSource, replicaDataSource));
+    }
+}
@@ -0,0 +1,134 @@
+package blog.yrol.shared;
+
+import blog.yrol.entity.ShardRoutingDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.tool.schema.Action;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+import java.io.StringWriter;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Opt-in (users.sharding.urls) sharding of the users over several DBs, one pool per URL with the spring.datasource.* credentials
+ * and Hikari settings. Which shard a query goes to is picked by UserShards, see ShardRoutingDataSource.
+ * Hibernate creates (ddl-auto) the schema on the first shard only, users.sharding.initialize-schema=true runs the same script on the others
+ * (local / test DBs, production schemas are migrated separately).
+ * Can't be combined with the read replica (users.datasource.replica.url), startup fails when both are set.
+ **/
+@Configuration
+@ConditionalOnProperty("users.sharding.urls")
+public class ShardedDataSourceConfiguration implements DisposableBean {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ShardedDataSourceConfiguration.class);
+
+    private final List<HikariDataSource> shardDataSources = new ArrayList<>();
+
+    private final StringWriter schemaScript = new StringWriter();
+
+    @Bean
+    @Primary
+    public DataSource dataSource(@Value("${users.sharding.urls}") List<String> shardUrls,
+                                 DataSourceProperties dataSourceProperties, Environment environment) {
+        if (!environment.getProperty("users.datasource.replica.url", "").isEmpty())
+            throw new IllegalStateException("users.sharding.urls and users.datasource.replica.url can't be combined, set only one of them");
+
+        Binder binder = Binder.get(environment);
+
+        for (int shard = 0; shard < shardUrls.size(); shard++) {
+            HikariDataSource shardDataSource = DataSourceBuilder.create()
+                    .type(HikariDataSource.class)
+                    .url(shardUrls.get(shard))
+                    .username(dataSourceProperties.determineUsername())
+                    .password(dataSourceProperties.determinePassword())
+                    .build();
+
+            binder.bind("spring.datasource.hikari", Bindable.ofInstance(shardDataSource));
+            shardDataSource.setPoolName((shardDataSource.getPoolName() == null ? "users" : shardDataSource.getPoolName()) + "-shard-" + shard);
+
+            shardDataSources.add(shardDataSource);
+        }
+
+        return new LazyConnectionDataSourceProxy(new ShardRoutingDataSource(shardDataSources));
+    }
+
+    /*
+     * The shard pools aren't beans, so Boot only publishes the "hikaricp.*" metrics of the first one (the routing default).
+     * Bound once every bean is created, the registry can't be injected into the DataSource (it binds the DataSource metrics itself)
+     */
+    @Bean
+    public SmartInitializingSingleton shardPoolMetrics(MeterRegistry meterRegistry) {
+        return () -> shardDataSources.stream()
+                .filter(shardDataSource -> shardDataSource.getMetricsTrackerFactory() == null && shardDataSource.getMetricRegistry() == null)
+                .forEach(shardDataSource -> shardDataSource.setMetricRegistry(meterRegistry));
+    }
+
+    /*
+     * Has Hibernate write its create script along with creating the schema (on the first shard).
+     * Hibernate ignores ddl-auto once a scripts action is set, so it's passed on as the database action
+     */
+    @Bean
+    @ConditionalOnProperty(name = "users.sharding.initialize-schema", havingValue = "true")
+    public HibernatePropertiesCustomizer shardSchemaScriptCustomizer() {
+        return hibernateProperties -> {
+            hibernateProperties.putIfAbsent(AvailableSettings.HBM2DDL_DATABASE_ACTION,
+                    Action.interpretHbm2ddlSetting(hibernateProperties.get(AvailableSettings.HBM2DDL_AUTO)));
+            hibernateProperties.put(AvailableSettings.HBM2DDL_SCRIPTS_ACTION, "create");
+            hibernateProperties.put(AvailableSettings.HBM2DDL_SCRIPTS_CREATE_TARGET, schemaScript);
+        };
+    }
+
+    /*
+     * Depends on the EntityManagerFactory so the script is written by then, one statement per line
+     */
+    @Bean
+    @ConditionalOnProperty(name = "users.sharding.initialize-schema", havingValue = "true")
+    public InitializingBean shardSchemaInitializer(EntityManagerFactory entityManagerFactory) {
+        return () -> {
+            String[] statements = schemaScript.toString().split("\\R");
+
+            for (HikariDataSource shardDataSource : shardDataSources.subList(1, shardDataSources.size())) {
+                try (Connection connection = shardDataSource.getConnection(); Statement statement = connection.createStatement()) {
+                    for (String sql : statements) {
+                        if (!sql.isBlank())
+                            statement.execute(sql);
+                    }
+                    if (!connection.getAutoCommit())
+                        connection.commit();
+                } catch (SQLException e) {
+                    throw new IllegalStateException("Could not create the schema of " + shardDataSource.getPoolName(), e);
+                }
+            }
+
+            LOG.info("Schema created on {} more shards", shardDataSources.size() - 1);
+        };
+    }
+
+    @Override
+    public void destroy() {
+        shardDataSources.forEach(HikariDataSource::close);
+    }
+}
@@ -0,0 +1,29 @@
+package blog.yrol.shared;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Opaque cursor used for keyset pagination of users, it wraps the (internal) ID of the last user returned.
+ * An empty cursor points before the first user.
+ **/
+public final class UserCursor {
+
+    private UserCursor() {
+    }
+
+    public static String encode(long id) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(Long.toString(id).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @throws IllegalArgumentException when the cursor wasn't created by encode()
+     **/
+    public static long decode(String cursor) {
+        if (cursor == null || cursor.isEmpty())
+            return 0;
+
+        return Long.parseLong(new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8));
+    }
+}
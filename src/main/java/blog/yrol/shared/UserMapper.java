@@ -0,0 +1,98 @@
+package blog.yrol.shared;
+
+import blog.yrol.entity.UserEntity;
+import blog.yrol.ui.request.UserDetailsRequestModel;
+import blog.yrol.ui.response.BulkUserResultRest;
+import blog.yrol.ui.response.UserRest;
+import io.micrometer.core.annotation.Timed;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Single place for the user conversions between the web, service and data layers.
+ * The conversions are plain getter / setter calls, mapping through ModelMapper (even a shared instance with
+ * pre-built type maps) costs a few microseconds and kilobytes per object, which adds up on every page of users.
+ * Mapping a page of users is timed as "users.mapping" (tagged with the method name). The single user conversions aren't timed,
+ * they also run once per row in exports and bulk creation where the timer would cost more than the mapping itself.
+ **/
+@Component
+public class UserMapper {
+
+    /*
+     * The IDs and the encrypted password are generated by the service layer
+     */
+    public UserDto toUserDto(UserDetailsRequestModel userDetails) {
+        UserDto userDto = new UserDto();
+        userDto.setFirstName(userDetails.getFirstName());
+        userDto.setLastName(userDetails.getLastName());
+        userDto.setEmail(userDetails.getEmail());
+        userDto.setPassword(userDetails.getPassword());
+        return userDto;
+    }
+
+    public UserDto toUserDto(UserEntity userEntity) {
+        UserDto userDto = new UserDto();
+        userDto.setId(userEntity.getId());
+        userDto.setUserId(userEntity.getUserId());
+        userDto.setFirstName(userEntity.getFirstName());
+        userDto.setLastName(userEntity.getLastName());
+        userDto.setEmail(userEntity.getEmail());
+        userDto.setEncryptedPassword(userEntity.getEncryptedPassword());
+        return userDto;
+    }
+
+    public UserEntity toUserEntity(UserDto userDto) {
+        UserEntity userEntity = new UserEntity();
+        userEntity.setId(userDto.getId());
+        userEntity.setUserId(userDto.getUserId());
+        userEntity.setFirstName(userDto.getFirstName());
+        userEntity.setLastName(userDto.getLastName());
+        userEntity.setEmail(userDto.getEmail());
+        userEntity.setEncryptedPassword(userDto.getEncryptedPassword());
+        return userEntity;
+    }
+
+    public UserRest toUserRest(UserDto userDto) {
+        UserRest userRest = new UserRest();
+        userRest.setUserId(userDto.getUserId());
+        userRest.setFirstName(userDto.getFirstName());
+        userRest.setLastName(userDto.getLastName());
+        userRest.setEmail(userDto.getEmail());
+        return userRest;
+    }
+
+    public UserRest toUserRest(UserSummary userSummary) {
+        UserRest userRest = new UserRest();
+        userRest.setUserId(userSummary.getUserId());
+        userRest.setFirstName(userSummary.getFirstName());
+        userRest.setLastName(userSummary.getLastName());
+        userRest.setEmail(userSummary.getEmail());
+        return userRest;
+    }
+
+    /*
+     * List endpoints map the selected summaries straight to the response, the entities are never loaded
+     */
+    @Timed("users.mapping")
+    public List<UserRest> toUserRestsFromSummaries(List<UserSummary> userSummaries) {
+        List<UserRest> userRests = new ArrayList<>(userSummaries.size());
+        for (UserSummary userSummary : userSummaries) {
+            userRests.add(toUserRest(userSummary));
+        }
+        return userRests;
+    }
+
+    public BulkUserResultRest toBulkUserResultRest(int index, BulkUserResult result) {
+        BulkUserResultRest resultRest = new BulkUserResultRest();
+        resultRest.setIndex(index);
+        resultRest.setStatus(result.getStatus());
+        resultRest.setMessage(result.getMessage());
+        if (result.getUser() != null) {
+            resultRest.setUserId(result.getUser().getUserId());
+            resultRest.setEmail(result.getUser().getEmail());
+        }
+        return resultRest;
+    }
+}
@@ -0,0 +1,22 @@
+package blog.yrol.shared;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Public user details as selected by the list queries (see UsersRepository), without the password hash.
+ * Built by the query itself, so listing users doesn't load (and dirty check) entities.
+ * The ID is only kept for the pagination cursor.
+ **/
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class UserSummary {
+
+    private long id;
+    private String userId;
+    private String firstName;
+    private String lastName;
+    private String email;
+}
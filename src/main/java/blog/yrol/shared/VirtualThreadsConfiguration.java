@@ -0,0 +1,56 @@
+package blog.yrol.shared;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Opt-in (spring.threads.virtual.enabled=true, Java 21+) execution of Tomcat requests and async work
+ * (StreamingResponseBody exports, @Async) on virtual threads. Blocking JDBC / BCrypt waits then park a cheap virtual thread
+ * instead of holding one of the fixed Tomcat workers, so many slow clients don't need a bigger thread pool.
+ * The DB pool and the password hashing pool still bound the actual work.
+ * Startup fails on older runtimes rather than silently falling back to platform threads.
+ **/
+@Configuration
+@ConditionalOnProperty(name = "spring.threads.virtual.enabled", havingValue = "true")
+public class VirtualThreadsConfiguration implements DisposableBean {
+
+    private static final Logger LOG = LoggerFactory.getLogger(VirtualThreadsConfiguration.class);
+
+    private final ExecutorService requestExecutor;
+
+    private final ExecutorService taskExecutor;
+
+    public VirtualThreadsConfiguration() {
+        this.requestExecutor = VirtualThreads.newExecutor("tomcat-virtual-");
+        this.taskExecutor = VirtualThreads.newExecutor("task-virtual-");
+        LOG.info("Running requests and async tasks on virtual threads");
+    }
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadsProtocolHandlerCustomizer() {
+        return protocolHandler -> protocolHandler.setExecutor(requestExecutor);
+    }
+
+    /*
+     * Replaces Boot's pooled applicationTaskExecutor, used by Spring MVC async requests and @Async
+     */
+    @Bean(name = {"applicationTaskExecutor", "taskExecutor"})
+    public AsyncTaskExecutor applicationTaskExecutor() {
+        return new TaskExecutorAdapter(taskExecutor);
+    }
+
+    @Override
+    public void destroy() {
+        requestExecutor.shutdown();
+        taskExecutor.shutdown();
+    }
+}
@@ -1,47 +1,304 @@
 package blog.yrol.ui.controllers;
 
+import blog.yrol.exception.PageTooDeepException;
+import blog.yrol.exception.PasswordHashingRejectedException;
 import blog.yrol.service.UsersService;
+import blog.yrol.shared.BulkUserResult;
+import blog.yrol.shared.UserCursor;
 import blog.yrol.shared.UserDto;
+import blog.yrol.shared.UserMapper;
+import blog.yrol.shared.UserSummary;
 import blog.yrol.ui.request.UserDetailsRequestModel;
+import blog.yrol.ui.response.BulkUserResultRest;
+import blog.yrol.ui.response.UserExportFormat;
 import blog.yrol.ui.response.UserRest;
-import org.modelmapper.ModelMapper;
-import org.modelmapper.TypeToken;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.RuntimeJsonMappingException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import javax.validation.ConstraintViolation;
 import javax.validation.Valid;
-import java.lang.reflect.Type;
+import javax.validation.Validator;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/users")
 public class UsersController {
 
+    public static final String NEXT_CURSOR_HEADER = "Next-Cursor";
+
+    private static final String CSV_HEADER = "userId,firstName,lastName,email";
+
     UsersService usersService;
 
+    UserMapper userMapper;
+
+    ObjectWriter userRestWriter;
+
+    ObjectReader userDetailsReader;
+
+    Validator validator;
+
+    int bulkChunkSize;
+
+    int maxPageLimit;
+
     @Autowired
-    public UsersController(UsersService usersService) {
+    public UsersController(UsersService usersService, UserMapper userMapper, ObjectMapper objectMapper, Validator validator,
+                           @Value("${users.bulk.chunk-size:500}") int bulkChunkSize,
+                           @Value("${users.page.max-limit:100}") int maxPageLimit) {
         this.usersService = usersService;
+        this.userMapper = userMapper;
+        this.userRestWriter = objectMapper.writerFor(UserRest.class);
+        this.userDetailsReader = objectMapper.readerFor(UserDetailsRequestModel.class);
+        this.validator = validator;
+        this.bulkChunkSize = bulkChunkSize;
+        this.maxPageLimit = maxPageLimit;
     }
 
     @PostMapping
     public UserRest createUser(@RequestBody @Valid UserDetailsRequestModel userDetails) throws Exception {
-        ModelMapper modelMapper = new ModelMapper();
-        UserDto userDto = new ModelMapper().map(userDetails, UserDto.class);
+        UserDto userDto = userMapper.toUserDto(userDetails);
 
         UserDto createdUser = usersService.createUser(userDto);
 
-        return modelMapper.map(createdUser, UserRest.class);
+        return userMapper.toUserRest(createdUser);
+    }
+
+    /**
+     * Bulk creation from a JSON array, every user gets its own result (same order as the request).
+     * Invalid users are reported as INVALID and don't stop the others from being created.
+     **/
+    @PostMapping(value = "/bulk", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public List<BulkUserResultRest> createUsers(@RequestBody List<UserDetailsRequestModel> usersDetails) {
+        return createUsers(usersDetails.iterator());
+    }
+
+    /**
+     * Bulk creation from NDJSON (one user per line). Users are read from the request body a chunk at a time,
+     * so large imports don't have to be held in memory all at once.
+     **/
+    @PostMapping(value = "/bulk", consumes = "application/x-ndjson")
+    public List<BulkUserResultRest> createUsersFromNdjson(InputStream body) throws IOException {
+        try (MappingIterator<UserDetailsRequestModel> usersDetails = userDetailsReader.readValues(body)) {
+            return createUsers(usersDetails);
+        } catch (RuntimeJsonMappingException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Malformed NDJSON", e);
+        }
+    }
+
+    private List<BulkUserResultRest> createUsers(Iterator<UserDetailsRequestModel> usersDetails) {
+        List<BulkUserResultRest> returnValue = new ArrayList<>();
+        List<UserDto> chunk = new ArrayList<>(bulkChunkSize);
+        List<Integer> chunkIndexes = new ArrayList<>(bulkChunkSize);
+
+        int index = 0;
+        while (usersDetails.hasNext()) {
+            UserDetailsRequestModel userDetails = usersDetails.next();
+
+            Set<ConstraintViolation<UserDetailsRequestModel>> violations = validator.validate(userDetails);
+            if (!violations.isEmpty()) {
+                returnValue.add(invalidUser(index++, userDetails, violations));
+                continue;
+            }
+
+            chunk.add(userMapper.toUserDto(userDetails));
+            chunkIndexes.add(index++);
+
+            if (chunk.size() == bulkChunkSize) {
+                createChunk(chunk, chunkIndexes, returnValue);
+                chunk.clear();
+                chunkIndexes.clear();
+            }
+        }
+
+        if (!chunk.isEmpty())
+            createChunk(chunk, chunkIndexes, returnValue);
+
+        returnValue.sort(Comparator.comparingInt(BulkUserResultRest::getIndex));
+        return returnValue;
+    }
+
+    /*
+     * A failing chunk (i.e. DB error) is reported per user, the chunks already stored are kept.
+     * A saturated password hashing pool fails the whole request fast with 503 (see handlePasswordHashingRejected),
+     * the users of the chunks already stored are reported as duplicates when the request is retried.
+     */
+    private void createChunk(List<UserDto> chunk, List<Integer> chunkIndexes, List<BulkUserResultRest> results) {
+        List<BulkUserResult> chunkResults;
+        try {
+            chunkResults = usersService.createUsers(chunk);
+        } catch (PasswordHashingRejectedException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            chunkResults = new ArrayList<>(chunk.size());
+            for (UserDto user : chunk) {
+                chunkResults.add(BulkUserResult.failed(BulkUserResult.Status.FAILED, user, "Could not create the user"));
+            }
+        }
+
+        for (int i = 0; i < chunkResults.size(); i++) {
+            results.add(userMapper.toBulkUserResultRest(chunkIndexes.get(i), chunkResults.get(i)));
+        }
+    }
+
+    private static BulkUserResultRest invalidUser(int index, UserDetailsRequestModel userDetails,
+                                                  Set<ConstraintViolation<UserDetailsRequestModel>> violations) {
+        BulkUserResultRest resultRest = new BulkUserResultRest();
+        resultRest.setIndex(index);
+        resultRest.setStatus(BulkUserResult.Status.INVALID);
+        resultRest.setEmail(userDetails.getEmail());
+        resultRest.setMessage(violations.stream()
+                .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                .sorted()
+                .collect(Collectors.joining(", ")));
+        return resultRest;
     }
 
     @GetMapping
     public List<UserRest> getUsers(@RequestParam(value = "page", defaultValue = "0") int page,
                                    @RequestParam(value = "limit", defaultValue = "2") int limit) {
-        List<UserDto> users = usersService.getUsers(page, limit);
+        checkLimit(limit);
+
+        List<UserSummary> users = usersService.getUsers(page, limit);
+
+        return userMapper.toUserRestsFromSummaries(users);
+    }
+
+    /**
+     * Keyset (cursor) pagination, selected by passing the "after" parameter (empty for the first page).
+     * The cursor for the next page is returned in the Next-Cursor header, it is missing on the last page.
+     **/
+    @GetMapping(params = "after")
+    public ResponseEntity<List<UserRest>> getUsersAfter(@RequestParam(value = "after") String after,
+                                                        @RequestParam(value = "limit", defaultValue = "2") int limit) {
+        checkLimit(limit);
+
+        long afterId;
+        try {
+            afterId = UserCursor.decode(after);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor");
+        }
+
+        Slice<UserSummary> users = usersService.getUsersAfter(afterId, limit);
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (users.hasNext()) {
+            UserSummary lastUser = users.getContent().get(users.getNumberOfElements() - 1);
+            response.header(NEXT_CURSOR_HEADER, UserCursor.encode(lastUser.getId()));
+        }
+
+        return response.body(userMapper.toUserRestsFromSummaries(users.getContent()));
+    }
+
+    /*
+     * A page holds 1 to users.page.max-limit users, larger pages have to be read with several requests
+     */
+    private void checkLimit(int limit) {
+        if (limit < 1 || limit > maxPageLimit)
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "The limit should be between 1 and " + maxPageLimit);
+    }
+
+    /**
+     * Streams the whole user directory as NDJSON (default) or CSV.
+     * Rows are written to the response as they're read from the DB, so the memory used doesn't depend on the number of users.
+     **/
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportUsers(@RequestParam(value = "format", defaultValue = "ndjson") String format) {
+        UserExportFormat exportFormat;
+        try {
+            exportFormat = UserExportFormat.valueOf(format.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unsupported export format");
+        }
+
+        StreamingResponseBody responseBody = outputStream -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+
+            if (exportFormat == UserExportFormat.CSV)
+                writer.write(CSV_HEADER + "\n");
+
+            try {
+                usersService.exportUsers(user -> writeUser(writer, exportFormat, userMapper.toUserRest(user)));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+
+            writer.flush();
+        };
+
+        return ResponseEntity.ok()
+                .contentType(exportFormat.getMediaType())
+                .body(responseBody);
+    }
+
+    /**
+     * Offset page past the users a sharded directory can page through, the cursor has to be used instead
+     **/
+    @ExceptionHandler(PageTooDeepException.class)
+    public ResponseEntity<String> handlePageTooDeep(PageTooDeepException e) {
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+    }
+
+    /**
+     * The password hashing pool is saturated (signup or bulk creation), clients should retry later
+     **/
+    @ExceptionHandler(PasswordHashingRejectedException.class)
+    public ResponseEntity<String> handlePasswordHashingRejected(PasswordHashingRejectedException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, PasswordHashingRejectedException.RETRY_AFTER_SECONDS)
+                .body(e.getMessage());
+    }
+
+    private void writeUser(Writer writer, UserExportFormat exportFormat, UserRest user) {
+        try {
+            if (exportFormat == UserExportFormat.CSV) {
+                writer.write(csvField(user.getUserId()) + ',' + csvField(user.getFirstName()) + ','
+                        + csvField(user.getLastName()) + ',' + csvField(user.getEmail()) + '\n');
+            } else {
+                writer.write(userRestWriter.writeValueAsString(user) + '\n');
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /*
+     * Quoting fields containing separators, quotes or line breaks (RFC 4180)
+     */
+    private static String csvField(String value) {
+        if (value == null)
+            return "";
 
-        Type listType = new TypeToken<List<UserRest>>() {
-        }.getType();
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0)
+            return value;
 
-        return new ModelMapper().map(users, listType);
+        return '"' + value.replace("\"", "\"\"") + '"';
     }
 }
@@ -0,0 +1,13 @@
+package blog.yrol.ui.response;
+
+import blog.yrol.shared.BulkUserResult;
+import lombok.Data;
+
+@Data
+public class BulkUserResultRest {
+    private int index;
+    private BulkUserResult.Status status;
+    private String userId;
+    private String email;
+    private String message;
+}
@@ -0,0 +1,21 @@
+package blog.yrol.ui.response;
+
+import org.springframework.http.MediaType;
+
+/**
+ * Formats supported by the users export (GET /users/export?format=...)
+ **/
+public enum UserExportFormat {
+    NDJSON(MediaType.parseMediaType("application/x-ndjson")),
+    CSV(MediaType.parseMediaType("text/csv"));
+
+    private final MediaType mediaType;
+
+    UserExportFormat(MediaType mediaType) {
+        this.mediaType = mediaType;
+    }
+
+    public MediaType getMediaType() {
+        return mediaType;
+    }
+}
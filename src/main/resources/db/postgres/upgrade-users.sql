@@ -0,0 +1,22 @@
+-- Brings a users table created by the original service (generated IDs, no reversed email, no email index)
+-- to the schema the "postgres" profile validates (ddl-auto=validate):
+--   * email_reversed column, backfilled from email, and its index (suffix / domain queries, see UserEntity)
+--   * unique email index, fails if the table holds duplicate emails: resolve them first
+--   * users_seq sequence with the allocation size increment (users.id.allocation_size, see UserIdGenerator)
+-- Run it once, with the service stopped, before deploying: psql "$USERS_DB_URL" -f upgrade-users.sql
+-- Every step is skipped when already applied, so it can be re-run.
+
+BEGIN;
+
+ALTER TABLE users ADD COLUMN IF NOT EXISTS email_reversed varchar(120);
+UPDATE users SET email_reversed = reverse(email) WHERE email_reversed IS NULL;
+ALTER TABLE users ALTER COLUMN email_reversed SET NOT NULL;
+
+CREATE INDEX IF NOT EXISTS users_email_reversed_idx ON users (email_reversed);
+CREATE UNIQUE INDEX IF NOT EXISTS users_email_idx ON users (email);
+
+-- The increment has to match users.id.allocation_size (50 by default), new IDs start after the existing ones
+CREATE SEQUENCE IF NOT EXISTS users_seq INCREMENT BY 50;
+SELECT setval('users_seq', (SELECT COALESCE(MAX(id), 0) + 1 FROM users), false);
+
+COMMIT;
@@ -0,0 +1,65 @@
+package blog.yrol.benchmark;
+
+import blog.yrol.entity.UserEntity;
+import blog.yrol.entity.UsersRepository;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Shared benchmark state which boots the whole application (all 3 layers) against the default in-memory H2.
+ * A fixed set of users is seeded once per trial, one of them with a known password so the login path can be exercised.
+ **/
+@State(Scope.Benchmark)
+public class ApplicationState {
+
+    public static final String LOGIN_EMAIL = "bench.login@test.com";
+    public static final String LOGIN_PASSWORD = "12345678";
+    public static final int SEEDED_USERS = 1000;
+
+    ConfigurableApplicationContext context;
+
+    @Setup(Level.Trial)
+    public void startApplication() {
+        context = BenchmarkApplication.start();
+
+        seedUsers();
+    }
+
+    @TearDown(Level.Trial)
+    public void stopApplication() {
+        context.close();
+    }
+
+    public <T> T getBean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    /*
+     * Hashing once and reusing the hash keeps the seeding fast, the stored users are only read by the benchmarks
+     */
+    private void seedUsers() {
+        String encryptedPassword = getBean(PasswordEncoder.class).encode(LOGIN_PASSWORD);
+
+        List<UserEntity> users = new ArrayList<>(SEEDED_USERS);
+        for (int i = 0; i < SEEDED_USERS; i++) {
+            UserEntity user = new UserEntity();
+            user.setUserId(UUID.randomUUID().toString());
+            user.setFirstName("Bench");
+            user.setLastName("User" + i);
+            user.setEmail(i == 0 ? LOGIN_EMAIL : "bench.user" + i + "@test.com");
+            user.setEncryptedPassword(encryptedPassword);
+            users.add(user);
+        }
+
+        getBean(UsersRepository.class).saveAll(users);
+    }
+}
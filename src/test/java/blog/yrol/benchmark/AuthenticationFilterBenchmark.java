@@ -0,0 +1,107 @@
+package blog.yrol.benchmark;
+
+import blog.yrol.sceurity.AuthenticationFilter;
+import blog.yrol.sceurity.OffloadedPasswordEncoder;
+import blog.yrol.sceurity.PasswordHashingExecutor;
+import blog.yrol.sceurity.TokenService;
+import blog.yrol.service.UsersService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.ProviderManager;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.core.Authentication;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the login path of AuthenticationFilter.
+ * attemptAuthentication - JSON body parsing, user lookup and BCrypt verification (on the password hashing pool, as in WebSecurity)
+ * successfulAuthentication - JWT creation and the response headers
+ **/
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AuthenticationFilterBenchmark {
+
+    private static final byte[] LOGIN_BODY = ("{\"email\":\"" + ApplicationState.LOGIN_EMAIL + "\","
+            + "\"password\":\"" + ApplicationState.LOGIN_PASSWORD + "\"}").getBytes(StandardCharsets.UTF_8);
+
+    BenchmarkAuthenticationFilter filter;
+
+    Authentication authentication;
+
+    @Setup(Level.Trial)
+    public void setUp(ApplicationState application) {
+        DaoAuthenticationProvider authenticationProvider = new DaoAuthenticationProvider();
+        authenticationProvider.setUserDetailsService(application.getBean(UsersService.class));
+        authenticationProvider.setPasswordEncoder(new OffloadedPasswordEncoder(application.getBean(PasswordHashingExecutor.class)));
+        AuthenticationManager authenticationManager = new ProviderManager(authenticationProvider);
+
+        filter = new BenchmarkAuthenticationFilter(authenticationManager, application.getBean(TokenService.class),
+                application.getBean(MeterRegistry.class));
+        authentication = filter.attemptAuthentication(loginRequest(), new MockHttpServletResponse());
+    }
+
+    @Benchmark
+    public Authentication attemptAuthentication() {
+        return filter.attemptAuthentication(loginRequest(), new MockHttpServletResponse());
+    }
+
+    @Benchmark
+    public MockHttpServletResponse successfulAuthentication() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.successfulAuthentication(loginRequest(), response, new MockFilterChain(), authentication);
+        return response;
+    }
+
+    private static MockHttpServletRequest loginRequest() {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/users/login");
+        request.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        request.setContent(LOGIN_BODY);
+        return request;
+    }
+
+    /**
+     * Exposes the protected success handler so it can be measured on its own
+     **/
+    static class BenchmarkAuthenticationFilter extends AuthenticationFilter {
+
+        BenchmarkAuthenticationFilter(AuthenticationManager authenticationManager, TokenService tokenService,
+                                      MeterRegistry meterRegistry) {
+            super(authenticationManager, tokenService, meterRegistry, new ObjectMapper(), 4096);
+        }
+
+        @Override
+        public void successfulAuthentication(HttpServletRequest req,
+                                             HttpServletResponse res,
+                                             FilterChain chain,
+                                             Authentication auth) throws IOException, ServletException {
+            super.successfulAuthentication(req, res, chain, auth);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package blog.yrol.benchmark;
+
+import blog.yrol.sceurity.AuthorizationFilter;
+import blog.yrol.sceurity.SecurityConstants;
+import blog.yrol.sceurity.TokenService;
+import blog.yrol.sceurity.VerifiedTokenCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the JWT validation done by AuthorizationFilter on every authenticated request
+ * (AuthorizationFilter.getAuthentication is reached through the public filter entry point).
+ **/
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AuthorizationFilterBenchmark {
+
+    AuthorizationFilter filter;
+
+    String authorizationHeader;
+
+    @Setup(Level.Trial)
+    public void setUp(ApplicationState application) {
+        /*
+         * The authentication manager is never consulted for bearer tokens
+         */
+        AuthenticationManager authenticationManager = authentication -> authentication;
+        TokenService tokenService = application.getBean(TokenService.class);
+        filter = new AuthorizationFilter(authenticationManager, tokenService,
+                application.getBean(VerifiedTokenCache.class));
+
+        authorizationHeader = SecurityConstants.TOKEN_PREFIX + tokenService.createToken(ApplicationState.LOGIN_EMAIL);
+    }
+
+    @Benchmark
+    public Authentication getAuthentication() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/users");
+        request.addHeader(SecurityConstants.HEADER_STRING, authorizationHeader);
+
+        filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        SecurityContextHolder.clearContext();
+        return authentication;
+    }
+}
@@ -0,0 +1,37 @@
+package blog.yrol.benchmark;
+
+import blog.yrol.UserServicesRest;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Boots the whole application for the benchmarks on a random port, with the given profile and property overrides.
+ * The overrides are passed as command line arguments: SpringApplicationBuilder.properties() only sets default properties,
+ * which application.properties takes precedence over.
+ **/
+final class BenchmarkApplication {
+
+    private BenchmarkApplication() {
+    }
+
+    static ConfigurableApplicationContext start(String... overrides) {
+        return startWithProfile("default", overrides);
+    }
+
+    static ConfigurableApplicationContext startWithProfile(String profile, String... overrides) {
+        List<String> args = new ArrayList<>(List.of(
+                "--server.port=0",
+                "--spring.main.banner-mode=off",
+                "--logging.level.root=WARN"));
+        for (String override : overrides) {
+            args.add("--" + override);
+        }
+
+        return new SpringApplicationBuilder(UserServicesRest.class)
+                .profiles(profile)
+                .run(args.toArray(new String[0]));
+    }
+}
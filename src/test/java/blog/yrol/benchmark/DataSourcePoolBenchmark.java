@@ -0,0 +1,116 @@
+package blog.yrol.benchmark;
+
+import blog.yrol.entity.UserEntity;
+import blog.yrol.entity.UsersRepository;
+import blog.yrol.service.UsersService;
+import blog.yrol.shared.UserSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load test of the connection pool: more clients than connections page through the users, per DB profile and pool size.
+ * Besides the JMH scores, the time spent waiting for a connection (Hikari's "hikaricp.connections.acquire" timer)
+ * is printed after every iteration, that's the part of the latency a bigger pool would remove.
+ **/
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+@Threads(DataSourcePoolBenchmark.CLIENTS)
+@State(Scope.Benchmark)
+public class DataSourcePoolBenchmark {
+
+    static final int CLIENTS = 32;
+
+    static final int SEEDED_USERS = 1000;
+
+    /*
+     * "default" is the in-memory H2, "h2file" is created in a temporary directory
+     */
+    @Param({"default", "h2file"})
+    String profile;
+
+    @Param({"4", "16"})
+    int poolSize;
+
+    ConfigurableApplicationContext context;
+
+    UsersService usersService;
+
+    Timer acquireTimer;
+
+    long acquireCount;
+
+    double acquireNanos;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        context = BenchmarkApplication.startWithProfile(profile,
+                "users.h2.file=" + Files.createTempDirectory("users-h2file").resolve("users"),
+                "spring.datasource.hikari.maximum-pool-size=" + poolSize,
+                "spring.datasource.hikari.minimum-idle=" + poolSize);
+
+        usersService = context.getBean(UsersService.class);
+        acquireTimer = context.getBean(MeterRegistry.class).get("hikaricp.connections.acquire").timer();
+
+        List<UserEntity> users = new ArrayList<>(SEEDED_USERS);
+        for (int i = 0; i < SEEDED_USERS; i++) {
+            UserEntity user = new UserEntity();
+            user.setUserId(UUID.randomUUID().toString());
+            user.setFirstName("Bench");
+            user.setLastName("User" + i);
+            user.setEmail("bench.user" + i + "@test.com");
+            user.setEncryptedPassword("$2a$10$benchmarkbenchmarkbenchmarkbenchmarkbenchmarkbenchmar");
+            users.add(user);
+        }
+        context.getBean(UsersRepository.class).saveAll(users);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Setup(Level.Iteration)
+    public void startIteration() {
+        acquireCount = acquireTimer.count();
+        acquireNanos = acquireTimer.totalTime(TimeUnit.NANOSECONDS);
+    }
+
+    @TearDown(Level.Iteration)
+    public void reportPoolWait() {
+        long count = acquireTimer.count() - acquireCount;
+        double nanos = acquireTimer.totalTime(TimeUnit.NANOSECONDS) - acquireNanos;
+
+        System.out.printf("%npool wait: %d acquisitions, mean %.1f us, max %.1f ms%n", count,
+                count == 0 ? 0 : nanos / count / 1000, acquireTimer.max(TimeUnit.MILLISECONDS));
+    }
+
+    @Benchmark
+    public List<UserSummary> getUsers() {
+        return usersService.getUsers(10, 20);
+    }
+}
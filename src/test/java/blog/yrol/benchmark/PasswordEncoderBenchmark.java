@@ -0,0 +1,58 @@
+package blog.yrol.benchmark;
+
+import blog.yrol.sceurity.PasswordEncoders;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the password check done on every login for each encoder setting ("algorithm:work factor"),
+ * to pick the work factor per environment (users.password-encoder.* properties).
+ * The work factor is the BCrypt strength, the PBKDF2 iterations or the Argon2 memory in KB (with 2 iterations).
+ * No Spring context, the encoder is built the same way as the passwordEncoder bean.
+ **/
+@BenchmarkMode({Mode.AverageTime, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PasswordEncoderBenchmark {
+
+    @Param({"bcrypt:10", "bcrypt:12", "pbkdf2:310000", "argon2:19456", "argon2:65536"})
+    String setting;
+
+    PasswordEncoder passwordEncoder;
+
+    String encodedPassword;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        String algorithm = setting.substring(0, setting.indexOf(':'));
+        int workFactor = Integer.parseInt(setting.substring(setting.indexOf(':') + 1));
+
+        passwordEncoder = PasswordEncoders.delegating(algorithm,
+                PasswordEncoders.BCRYPT.equals(algorithm) ? workFactor : 10,
+                PasswordEncoders.PBKDF2.equals(algorithm) ? workFactor : 310000,
+                PasswordEncoders.ARGON2.equals(algorithm) ? workFactor : 19456,
+                2);
+        encodedPassword = passwordEncoder.encode(ApplicationState.LOGIN_PASSWORD);
+    }
+
+    @Benchmark
+    public boolean matches() {
+        return passwordEncoder.matches(ApplicationState.LOGIN_PASSWORD, encodedPassword);
+    }
+}
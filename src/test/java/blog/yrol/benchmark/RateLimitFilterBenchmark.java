@@ -0,0 +1,89 @@
+package blog.yrol.benchmark;
+
+import blog.yrol.sceurity.RateLimitFilter;
+import blog.yrol.sceurity.RateLimiter;
+import com.github.benmanes.caffeine.cache.Ticker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the rate limiting added in front of logins / signups, with 8 threads sharing the buckets (no Spring context).
+ * keys - number of distinct clients, 1 is every thread hammering the same bucket (worst case CAS contention)
+ * tryAcquire - a single bucket update
+ * doFilter - the whole filter on a login request (IP bucket, email read from the body, email bucket)
+ * The limits are set high enough for every request to be allowed, so the cost of the allowed path is measured.
+ **/
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class RateLimitFilterBenchmark {
+
+    @Param({"1", "10000"})
+    int keys;
+
+    RateLimiter rateLimiter;
+
+    RateLimitFilter filter;
+
+    String[] ips;
+
+    byte[][] loginBodies;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        rateLimiter = new RateLimiter(Integer.MAX_VALUE, Integer.MAX_VALUE, 100_000, Ticker.systemTicker());
+        filter = new RateLimitFilter(
+                new RateLimiter(Integer.MAX_VALUE, Integer.MAX_VALUE, 100_000, Ticker.systemTicker()),
+                new RateLimiter(Integer.MAX_VALUE, Integer.MAX_VALUE, 100_000, Ticker.systemTicker()),
+                4096, new SimpleMeterRegistry());
+
+        ips = new String[keys];
+        loginBodies = new byte[keys][];
+        for (int i = 0; i < keys; i++) {
+            ips[i] = "10.0." + (i / 256) + "." + (i % 256);
+            loginBodies[i] = ("{\"email\":\"bench.user" + i + "@test.com\",\"password\":\"12345678\"}").getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    @Benchmark
+    public long tryAcquire() {
+        return rateLimiter.tryAcquire(ips[ThreadLocalRandom.current().nextInt(keys)]);
+    }
+
+    @Benchmark
+    public MockHttpServletResponse doFilter() throws Exception {
+        int key = ThreadLocalRandom.current().nextInt(keys);
+
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/users/login");
+        request.setRemoteAddr(ips[key]);
+        request.setContentType("application/json");
+        request.setContent(loginBodies[key]);
+
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain());
+        return response;
+    }
+}
@@ -0,0 +1,111 @@
+package blog.yrol.benchmark;
+
+import blog.yrol.entity.UserEntity;
+import blog.yrol.shared.UserDto;
+import blog.yrol.shared.UserMapper;
+import blog.yrol.shared.UserSummary;
+import blog.yrol.ui.request.UserDetailsRequestModel;
+import blog.yrol.ui.response.UserRest;
+import org.modelmapper.ModelMapper;
+import org.modelmapper.TypeToken;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares a ModelMapper created per call (the "newModelMapper" benchmarks, how the conversions were done before)
+ * with UserMapper for the conversions done while creating a user and listing a page of users
+ * (entities through DTOs before, the selected summaries now).
+ **/
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UserMapperBenchmark {
+
+    static final int PAGE_SIZE = 20;
+
+    UserMapper userMapper;
+
+    UserDetailsRequestModel userDetails;
+
+    UserEntity userEntity;
+
+    List<UserEntity> userEntities;
+
+    List<UserSummary> userSummaries;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        userMapper = new UserMapper();
+
+        userDetails = new UserDetailsRequestModel();
+        userDetails.setFirstName("Yrol");
+        userDetails.setLastName("Fernando");
+        userDetails.setEmail("test@test.com");
+        userDetails.setPassword("12345678");
+        userDetails.setRepeatPassword("12345678");
+
+        userEntities = new ArrayList<>();
+        userSummaries = new ArrayList<>();
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            UserEntity user = new UserEntity();
+            user.setId(i + 1);
+            user.setUserId(UUID.randomUUID().toString());
+            user.setFirstName("Bench");
+            user.setLastName("User" + i);
+            user.setEmail("bench.user" + i + "@test.com");
+            user.setEncryptedPassword("$2a$10$benchmarkbenchmarkbenchmarkbenchmarkbenchmarkbenchmar");
+            userEntities.add(user);
+            userSummaries.add(new UserSummary(user.getId(), user.getUserId(), user.getFirstName(), user.getLastName(), user.getEmail()));
+        }
+        userEntity = userEntities.get(0);
+    }
+
+    @Benchmark
+    public UserRest createUser_newModelMapper(Blackhole blackhole) {
+        UserDto userDto = new ModelMapper().map(userDetails, UserDto.class);
+        blackhole.consume(new ModelMapper().map(userDto, UserEntity.class));
+        UserDto storedUser = new ModelMapper().map(userEntity, UserDto.class);
+        return new ModelMapper().map(storedUser, UserRest.class);
+    }
+
+    @Benchmark
+    public UserRest createUser_userMapper(Blackhole blackhole) {
+        UserDto userDto = userMapper.toUserDto(userDetails);
+        blackhole.consume(userMapper.toUserEntity(userDto));
+        UserDto storedUser = userMapper.toUserDto(userEntity);
+        return userMapper.toUserRest(storedUser);
+    }
+
+    @Benchmark
+    public List<UserRest> getUsers_newModelMapper() {
+        Type dtoListType = new TypeToken<List<UserDto>>() {}.getType();
+        List<UserDto> userDtos = new ModelMapper().map(userEntities, dtoListType);
+
+        Type restListType = new TypeToken<List<UserRest>>() {}.getType();
+        return new ModelMapper().map(userDtos, restListType);
+    }
+
+    @Benchmark
+    public List<UserRest> getUsers_userMapper() {
+        return userMapper.toUserRestsFromSummaries(userSummaries);
+    }
+}
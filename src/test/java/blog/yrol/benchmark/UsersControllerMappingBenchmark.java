@@ -0,0 +1,144 @@
+package blog.yrol.benchmark;
+
+import blog.yrol.service.UsersService;
+import blog.yrol.shared.BulkUserResult;
+import blog.yrol.shared.UserDto;
+import blog.yrol.shared.UserMapper;
+import blog.yrol.shared.UserSummary;
+import blog.yrol.ui.controllers.UsersController;
+import blog.yrol.ui.request.UserDetailsRequestModel;
+import blog.yrol.ui.response.UserRest;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import javax.validation.Validation;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Benchmarks the DTO conversions done in UsersController.
+ * The service layer is replaced with a stub returning fixed data, so only the mapping cost is measured (no Spring context or DB).
+ **/
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UsersControllerMappingBenchmark {
+
+    static final int PAGE_SIZE = 20;
+
+    UsersController usersController;
+
+    UserDetailsRequestModel userDetails;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        usersController = new UsersController(new StubUsersService(), new UserMapper(), new ObjectMapper(),
+                Validation.buildDefaultValidatorFactory().getValidator(), 500, 100);
+
+        userDetails = new UserDetailsRequestModel();
+        userDetails.setFirstName("Yrol");
+        userDetails.setLastName("Fernando");
+        userDetails.setEmail("test@test.com");
+        userDetails.setPassword("12345678");
+        userDetails.setRepeatPassword("12345678");
+    }
+
+    @Benchmark
+    public UserRest createUser() throws Exception {
+        return usersController.createUser(userDetails);
+    }
+
+    @Benchmark
+    public List<UserRest> getUsers() {
+        return usersController.getUsers(1, PAGE_SIZE);
+    }
+
+    /**
+     * Returns fixed DTOs without touching the DB
+     **/
+    static class StubUsersService implements UsersService {
+
+        private final List<UserSummary> users = new ArrayList<>();
+
+        StubUsersService() {
+            for (int i = 0; i < PAGE_SIZE; i++) {
+                users.add(new UserSummary(i + 1, UUID.randomUUID().toString(), "Bench", "User", "bench.user" + i + "@test.com"));
+            }
+        }
+
+        @Override
+        public UserDto createUser(UserDto user) {
+            user.setUserId(UUID.randomUUID().toString());
+            return user;
+        }
+
+        @Override
+        public List<BulkUserResult> createUsers(List<UserDto> users) {
+            List<BulkUserResult> results = new ArrayList<>(users.size());
+            for (UserDto user : users) {
+                results.add(BulkUserResult.created(createUser(user)));
+            }
+            return results;
+        }
+
+        @Override
+        public List<UserSummary> getUsers(int page, int limit) {
+            return users;
+        }
+
+        @Override
+        public Slice<UserSummary> getUsersAfter(long afterId, int limit) {
+            return new SliceImpl<>(users);
+        }
+
+        @Override
+        public void exportUsers(Consumer<UserSummary> consumer) {
+            users.forEach(consumer);
+        }
+
+        @Override
+        public UserDto getUser(String email) {
+            return userDto(email);
+        }
+
+        @Override
+        public UserDetails loadUserByUsername(String email) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public UserDetails updatePassword(UserDetails user, String newPassword) {
+            throw new UnsupportedOperationException();
+        }
+
+        private static UserDto userDto(String email) {
+            UserDto userDto = new UserDto();
+            userDto.setId(1);
+            userDto.setUserId(UUID.randomUUID().toString());
+            userDto.setFirstName("Bench");
+            userDto.setLastName("User");
+            userDto.setEmail(email);
+            userDto.setEncryptedPassword("$2a$10$benchmarkbenchmarkbenchmarkbenchmarkbenchmarkbenchmar");
+            return userDto;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package blog.yrol.benchmark;
+
+import blog.yrol.service.UsersService;
+import blog.yrol.shared.UserDto;
+import blog.yrol.shared.UserSummary;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Benchmarks the service layer against the in-memory H2.
+ * createUser - duplicate check, BCrypt hashing and the insert (every invocation uses a new email)
+ * getUsers - paging through the seeded users (first page and the last page)
+ **/
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UsersServiceBenchmark {
+
+    private final AtomicLong userSequence = new AtomicLong();
+
+    UsersService usersService;
+
+    @Setup(Level.Trial)
+    public void setUp(ApplicationState application) {
+        usersService = application.getBean(UsersService.class);
+    }
+
+    @Benchmark
+    public UserDto createUser() {
+        UserDto userDto = new UserDto();
+        userDto.setFirstName("Bench");
+        userDto.setLastName("Created");
+        userDto.setEmail("bench.created" + userSequence.incrementAndGet() + "@test.com");
+        userDto.setPassword(ApplicationState.LOGIN_PASSWORD);
+
+        return usersService.createUser(userDto);
+    }
+
+    @Benchmark
+    public List<UserSummary> getUsers(Paging paging) {
+        return usersService.getUsers(paging.page, paging.limit);
+    }
+
+    /**
+     * Kept in its own state so only getUsers is parameterised
+     **/
+    @State(Scope.Benchmark)
+    public static class Paging {
+
+        @Param({"1", "50"})
+        int page;
+
+        @Param({"20"})
+        int limit;
+    }
+}
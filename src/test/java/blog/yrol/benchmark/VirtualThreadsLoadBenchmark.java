@@ -0,0 +1,111 @@
+package blog.yrol.benchmark;
+
+import blog.yrol.sceurity.SecurityConstants;
+import blog.yrol.sceurity.TokenService;
+import blog.yrol.shared.VirtualThreadsConfiguration;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load test of GET /users with many concurrent clients, platform Tomcat workers vs virtual threads (spring.threads.virtual.enabled).
+ * Every SQL statement is delayed by DB_LATENCY_MILLIS to simulate a remote DB, and Tomcat is capped at TOMCAT_THREADS workers,
+ * so with platform threads throughput is bounded by TOMCAT_THREADS / latency while virtual threads only park on the wait.
+ * The DB pool is sized to the client count so it isn't the bottleneck in either mode.
+ * The "true" case needs the benchmark JVM to be Java 21 or later.
+ **/
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 10)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+@Threads(VirtualThreadsLoadBenchmark.CLIENTS)
+@State(Scope.Benchmark)
+public class VirtualThreadsLoadBenchmark {
+
+    static final int CLIENTS = 400;
+
+    static final int TOMCAT_THREADS = 50;
+
+    static final long DB_LATENCY_MILLIS = 20;
+
+    @Param({"false", "true"})
+    String virtualThreads;
+
+    ConfigurableApplicationContext context;
+
+    HttpClient httpClient;
+
+    HttpRequest getUsersRequest;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start(
+                "spring.threads.virtual.enabled=" + virtualThreads,
+                "server.tomcat.threads.max=" + TOMCAT_THREADS,
+                "server.tomcat.max-connections=" + (CLIENTS * 2),
+                "spring.datasource.hikari.maximum-pool-size=" + CLIENTS,
+                "spring.jpa.properties.hibernate.session_factory.statement_inspector=" + SlowDatabase.class.getName());
+
+        /*
+         * Both cases would otherwise silently measure the same (platform threads) setup
+         */
+        if (Boolean.parseBoolean(virtualThreads) != (context.getBeanNamesForType(VirtualThreadsConfiguration.class).length > 0))
+            throw new IllegalStateException("spring.threads.virtual.enabled=" + virtualThreads + " was not applied");
+
+        int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+        String token = context.getBean(TokenService.class).createToken(ApplicationState.LOGIN_EMAIL);
+
+        httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        getUsersRequest = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/users?page=0&limit=2"))
+                .header(SecurityConstants.HEADER_STRING, SecurityConstants.TOKEN_PREFIX + token)
+                .GET()
+                .build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public int getUsers() throws Exception {
+        return httpClient.send(getUsersRequest, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    /**
+     * Delays every statement on the calling (request) thread, instantiated by Hibernate
+     **/
+    public static class SlowDatabase implements StatementInspector {
+
+        @Override
+        public String inspect(String sql) {
+            try {
+                Thread.sleep(DB_LATENCY_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return sql;
+        }
+    }
+}
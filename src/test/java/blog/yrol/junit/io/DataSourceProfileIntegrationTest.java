@@ -0,0 +1,74 @@
+package blog.yrol.junit.io;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import blog.yrol.entity.UserEntity;
+import blog.yrol.entity.UsersRepository;
+import blog.yrol.junit.shared.TestUsers;
+
+/**
+ * Testing the "h2file" profile: the configured DB (not the embedded test one) and pool settings are used.
+ * The DB file is created in a temporary directory.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("h2file")
+public class DataSourceProfileIntegrationTest {
+
+    @Autowired
+    DataSource dataSource;
+
+    @Autowired
+    UsersRepository usersRepository;
+
+    @DynamicPropertySource
+    static void h2File(DynamicPropertyRegistry registry) throws IOException {
+        Path directory = Files.createTempDirectory("users-h2file");
+        registry.add("users.h2.file", () -> directory.resolve("users").toString());
+    }
+
+    @Test
+    @DisplayName("Tuned Hikari pool is used")
+    void testDataSource_whenH2FileProfile_usesTunedPool() {
+        // Assert
+        Assertions.assertTrue(dataSource instanceof HikariDataSource, "A Hikari pool should've been created");
+        HikariDataSource hikariDataSource = (HikariDataSource) dataSource;
+        Assertions.assertTrue(hikariDataSource.getJdbcUrl().startsWith("jdbc:h2:file:"), "The file-backed H2 should be used");
+        Assertions.assertTrue(hikariDataSource.getJdbcUrl().contains("MODE=PostgreSQL"), "H2 should run in PostgreSQL mode");
+        Assertions.assertEquals("users-pool", hikariDataSource.getPoolName(), "The pool name doesn't match");
+        Assertions.assertEquals(8, hikariDataSource.getMaximumPoolSize(), "The profile's pool size should be used");
+        Assertions.assertEquals(60000, hikariDataSource.getLeakDetectionThreshold(), "Leak detection should be on");
+        Assertions.assertFalse(hikariDataSource.isAutoCommit(), "Connections should be handed out without auto-commit");
+    }
+
+    @Test
+    @DisplayName("Users are stored in the file-backed DB")
+    void testSave_whenH2FileProfile_userCanBeFound() {
+        // Arrange
+        UserEntity user = TestUsers.userEntity("test@test.com");
+
+        // Act
+        usersRepository.save(user);
+
+        // Assert
+        UserEntity storedUser = usersRepository.findByEmail("test@test.com");
+        Assertions.assertNotNull(storedUser, "The stored user should've been found");
+        Assertions.assertEquals(user.getUserId(), storedUser.getUserId(), "User ID does not match");
+    }
+}
@@ -0,0 +1,161 @@
+package blog.yrol.junit.io;
+
+import java.util.List;
+import java.util.UUID;
+
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import blog.yrol.entity.ReadWriteRoutingDataSource;
+import blog.yrol.entity.UserEntity;
+import blog.yrol.entity.UsersRepository;
+import blog.yrol.junit.shared.TestUsers;
+import blog.yrol.service.UserCache;
+import blog.yrol.service.UsersService;
+import blog.yrol.shared.UserDto;
+import blog.yrol.shared.UserSummary;
+
+/**
+ * Testing the read / write split with two in-memory H2 DBs, a primary and a replica.
+ * There's no replication between them: the replica only gets the schema, so every user found there was put there by the test.
+ * The email filter is disabled, it would rule out the users only inserted in the replica.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:users-primary;DB_CLOSE_DELAY=-1",
+        "users.datasource.replica.url=jdbc:h2:mem:users-replica;DB_CLOSE_DELAY=-1",
+        "users.email-filter.enabled=false"
+})
+public class ReadWriteRoutingIntegrationTest {
+
+    @Autowired
+    UsersService usersService;
+
+    @Autowired
+    UsersRepository usersRepository;
+
+    @Autowired
+    UserCache userCache;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    @Qualifier("primaryDataSource")
+    DataSource primaryDataSource;
+
+    @Autowired
+    @Qualifier("replicaDataSource")
+    DataSource replicaDataSource;
+
+    JdbcTemplate primary;
+
+    JdbcTemplate replica;
+
+    @BeforeEach
+    void setUp() {
+        primary = new JdbcTemplate(primaryDataSource);
+        replica = new JdbcTemplate(replicaDataSource);
+
+        replica.execute("DROP ALL OBJECTS");
+        for (String statement : primary.queryForList("SCRIPT NODATA", String.class)) {
+            replica.execute(statement);
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        usersRepository.deleteAll();
+        userCache.invalidate("replica@test.com");
+        userCache.invalidate("primary@test.com");
+    }
+
+    @Test
+    @DisplayName("Listing users reads the replica")
+    void testGetUsers_whenReadOnly_readsReplica() {
+        // Arrange
+        insertInto(replicaDataSource, "replica@test.com");
+
+        // Act
+        List<UserSummary> users = usersService.getUsers(1, 10);
+
+        // Assert
+        Assertions.assertEquals(1, users.size(), "There should be exactly one user in the list");
+        Assertions.assertEquals("replica@test.com", users.get(0).getEmail(), "The user should've been read from the replica");
+    }
+
+    @Test
+    @DisplayName("Loading a user reads the replica")
+    void testGetUser_whenNotRecentlyWritten_readsReplica() {
+        // Arrange
+        insertInto(replicaDataSource, "replica@test.com");
+
+        // Act
+        UserDto user = usersService.getUser("replica@test.com");
+
+        // Assert
+        Assertions.assertEquals("replica@test.com", user.getEmail(), "The user should've been read from the replica");
+    }
+
+    /**
+     * The replica never gets the new user here (i.e. a lagging replica), the creating client still finds it
+     **/
+    @Test
+    @DisplayName("Created user is written to the primary and read back from it")
+    void testCreateUser_whenReadRightAfter_readsOwnWriteFromPrimary() {
+        // Arrange
+        UserDto userDto = TestUsers.userDto("primary@test.com");
+
+        // Act
+        UserDto createdUser = usersService.createUser(userDto);
+        userCache.invalidate(createdUser.getEmail());
+        entityManagerFactory.unwrap(SessionFactory.class).getCache().evictAllRegions();
+        UserDto user = usersService.getUser(createdUser.getEmail());
+
+        // Assert
+        Assertions.assertEquals(1, primary.queryForObject("select count(*) from users", Integer.class), "The user should be on the primary");
+        Assertions.assertEquals(0, replica.queryForObject("select count(*) from users", Integer.class), "The user shouldn't be on the replica");
+        Assertions.assertEquals(createdUser.getUserId(), user.getUserId(), "The user should've been read from the primary");
+    }
+
+    /**
+     * The miss read from the lagging replica mustn't be cached (query cache), the next read forced to the primary finds the user
+     **/
+    @Test
+    @DisplayName("Miss from a lagging replica isn't served to primary reads")
+    void testFindByEmail_whenReplicaLags_primaryReadStillFindsUser() {
+        // Arrange
+        insertInto(primaryDataSource, "primary@test.com");
+        entityManagerFactory.unwrap(SessionFactory.class).getCache().evictAllRegions();
+
+        // Act
+        UserEntity replicaUser = usersRepository.findByEmail("primary@test.com");
+        UserEntity primaryUser = ReadWriteRoutingDataSource.onPrimary(() -> usersRepository.findByEmail("primary@test.com"));
+
+        // Assert
+        Assertions.assertNull(replicaUser, "The user shouldn't be on the lagging replica yet");
+        Assertions.assertNotNull(primaryUser, "The user should've been read from the primary");
+        Assertions.assertEquals("primary@test.com", primaryUser.getEmail(), "The user should've been read from the primary");
+    }
+
+    /*
+     * Committed explicitly, the pools hand out connections without auto-commit
+     */
+    private void insertInto(DataSource dataSource, String email) {
+        new TransactionTemplate(new DataSourceTransactionManager(dataSource)).executeWithoutResult(status -> new JdbcTemplate(dataSource).update("insert into users (id, user_id, first_name, last_name, email, email_reversed, encrypted_password)"
+                        + " values (?, ?, ?, ?, ?, ?, ?)",
+                1, UUID.randomUUID().toString(), "Yrol", "Fernando", email, UserEntity.reverseEmail(email), "12345678"));
+    }
+}
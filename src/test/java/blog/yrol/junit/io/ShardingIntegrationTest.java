@@ -0,0 +1,256 @@
+package blog.yrol.junit.io;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.data.domain.Slice;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import blog.yrol.entity.UserEntity;
+import blog.yrol.entity.UserShards;
+import blog.yrol.entity.UsersRepository;
+import blog.yrol.junit.shared.TestUsers;
+import blog.yrol.service.UserCache;
+import blog.yrol.service.UsersService;
+import blog.yrol.shared.BulkUserResult;
+import blog.yrol.shared.ReadWriteDataSourceConfiguration;
+import blog.yrol.shared.ShardedDataSourceConfiguration;
+import blog.yrol.shared.UserDto;
+import blog.yrol.shared.UserSummary;
+
+/**
+ * Testing the sharding with three in-memory H2 DBs, the schema is created on the second and third by users.sharding.initialize-schema.
+ * Users are counted on each shard with plain JDBC connections to the same in-memory DBs (kept open by the shard pools).
+ */
+@SpringBootTest(properties = {
+        "users.sharding.urls=" + ShardingIntegrationTest.SHARD_0 + "," + ShardingIntegrationTest.SHARD_1 + "," + ShardingIntegrationTest.SHARD_2,
+        "users.sharding.initialize-schema=true"
+})
+public class ShardingIntegrationTest {
+
+    static final String SHARD_0 = "jdbc:h2:mem:users-shard-0";
+
+    static final String SHARD_1 = "jdbc:h2:mem:users-shard-1";
+
+    static final String SHARD_2 = "jdbc:h2:mem:users-shard-2";
+
+    static final int USERS = 12;
+
+    @Autowired
+    UsersService usersService;
+
+    @Autowired
+    UsersRepository usersRepository;
+
+    @Autowired
+    UserShards userShards;
+
+    @Autowired
+    UserCache userCache;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    List<JdbcTemplate> shards;
+
+    List<UserDto> createdUsers;
+
+    @BeforeEach
+    void setUp() {
+        shards = new ArrayList<>();
+        for (String url : List.of(SHARD_0, SHARD_1, SHARD_2)) {
+            shards.add(new JdbcTemplate(new DriverManagerDataSource(url, "sa", "")));
+        }
+
+        createdUsers = new ArrayList<>();
+        for (int i = 0; i < USERS; i++) {
+            createdUsers.add(usersService.createUser(TestUsers.userDto("user" + i + "@test.com")));
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        userShards.forEachShard(() -> usersRepository.deleteAll());
+        createdUsers.forEach(user -> userCache.invalidate(user.getEmail()));
+        userCache.invalidate("bulk@test.com");
+        entityManagerFactory.unwrap(SessionFactory.class).getCache().evictAllRegions();
+    }
+
+    @Test
+    @DisplayName("Users are stored on the shard of their email")
+    void testCreateUser_whenSharded_storesUserOnEmailShard() {
+        for (UserDto user : createdUsers) {
+            int shard = userShards.shardOf(user.getEmail());
+
+            for (int i = 0; i < shards.size(); i++) {
+                Assertions.assertEquals(i == shard ? 1 : 0,
+                        shards.get(i).queryForObject("select count(*) from users where email = ?", Integer.class, user.getEmail()),
+                        user.getEmail() + " should only be stored on shard " + shard);
+            }
+            Assertions.assertEquals(shard, userShards.shardOfUserId(user.getUserId()), "The user ID should encode the shard");
+        }
+
+        for (int i = 0; i < shards.size(); i++) {
+            Assertions.assertTrue(shards.get(i).queryForObject("select count(*) from users", Integer.class) > 0,
+                    "Every shard should have users");
+        }
+    }
+
+    @Test
+    @DisplayName("Users are found by email and by user ID on their shard")
+    void testFindUser_whenSharded_readsUserShard() {
+        // Arrange
+        createdUsers.forEach(user -> userCache.invalidate(user.getEmail()));
+        entityManagerFactory.unwrap(SessionFactory.class).getCache().evictAllRegions();
+
+        for (UserDto createdUser : createdUsers) {
+            // Act
+            UserDto user = usersService.getUser(createdUser.getEmail());
+            UserEntity userEntity = usersRepository.findByUserId(createdUser.getUserId());
+
+            // Assert
+            Assertions.assertEquals(createdUser.getUserId(), user.getUserId(), "The user should be found by email");
+            Assertions.assertNotNull(userEntity, "The user should be found by user ID");
+            Assertions.assertEquals(createdUser.getEmail(), userEntity.getEmail(), "Emails should match");
+        }
+    }
+
+    /**
+     * The lookup is served by the query cache, the update still has to reach the user's shard
+     **/
+    @Test
+    @DisplayName("Rehashed password is stored on the user's shard")
+    void testUpdatePassword_whenSharded_updatesUserShard() {
+        // Arrange
+        UserDto createdUser = createdUsers.stream()
+                .filter(user -> userShards.shardOf(user.getEmail()) != 0)
+                .findFirst()
+                .orElseThrow();
+        userCache.invalidate(createdUser.getEmail());
+        UserDetails userDetails = usersService.loadUserByUsername(createdUser.getEmail());
+
+        // Act
+        usersService.updatePassword(userDetails, "{bcrypt}newHash");
+
+        // Assert
+        Assertions.assertEquals("{bcrypt}newHash", shards.get(userShards.shardOf(createdUser.getEmail()))
+                .queryForObject("select encrypted_password from users where email = ?", String.class, createdUser.getEmail()),
+                "The new hash should be stored on the user's shard");
+    }
+
+    @Test
+    @DisplayName("IDs are unique across the shards")
+    void testCreateUser_whenSharded_generatesUniqueIds() {
+        List<Long> ids = createdUsers.stream().map(UserDto::getId).distinct().collect(Collectors.toList());
+
+        Assertions.assertEquals(USERS, ids.size(), "Every user should have a distinct ID");
+    }
+
+    @Test
+    @DisplayName("Pages merge the users of every shard by ID")
+    void testGetUsers_whenSharded_mergesShardsById() {
+        // Act
+        List<UserSummary> users = new ArrayList<>();
+        for (int page = 1; page <= 3; page++) {
+            users.addAll(usersService.getUsers(page, 5));
+        }
+
+        // Assert
+        Assertions.assertEquals(expectedIds(), ids(users), "Pages should hold every user once, in ID order");
+        Assertions.assertTrue(usersService.getUsers(4, 5).isEmpty(), "There shouldn't be a fourth page");
+    }
+
+    @Test
+    @DisplayName("Cursor pages merge the users of every shard by ID")
+    void testGetUsersAfter_whenSharded_mergesShardsById() {
+        // Act
+        List<UserSummary> users = new ArrayList<>();
+        Slice<UserSummary> slice = usersService.getUsersAfter(0, 5);
+        users.addAll(slice.getContent());
+        while (slice.hasNext()) {
+            slice = usersService.getUsersAfter(users.get(users.size() - 1).getId(), 5);
+            users.addAll(slice.getContent());
+        }
+
+        // Assert
+        Assertions.assertEquals(expectedIds(), ids(users), "Pages should hold every user once, in ID order");
+    }
+
+    @Test
+    @DisplayName("Bulk creation stores every user on its shard and finds the duplicates on every shard")
+    void testCreateUsers_whenSharded_checksEveryShard() {
+        // Arrange
+        List<UserDto> users = new ArrayList<>();
+        for (UserDto createdUser : createdUsers) {
+            users.add(TestUsers.userDto(createdUser.getEmail()));
+        }
+        users.add(TestUsers.userDto("bulk@test.com"));
+
+        // Act
+        List<BulkUserResult> results = usersService.createUsers(users);
+
+        // Assert
+        for (int i = 0; i < USERS; i++) {
+            Assertions.assertEquals(BulkUserResult.Status.DUPLICATE, results.get(i).getStatus(), "Existing email should be a duplicate");
+        }
+        Assertions.assertEquals(BulkUserResult.Status.CREATED, results.get(USERS).getStatus(), "New email should be created");
+        Assertions.assertEquals(1, shards.get(userShards.shardOf("bulk@test.com"))
+                .queryForObject("select count(*) from users where email = 'bulk@test.com'", Integer.class), "The user should be on its shard");
+    }
+
+    @Test
+    @DisplayName("Export streams the users of every shard")
+    void testExportUsers_whenSharded_readsEveryShard() {
+        // Act
+        List<UserSummary> users = new ArrayList<>();
+        usersService.exportUsers(users::add);
+
+        // Assert
+        Assertions.assertEquals(expectedIds(), ids(users).stream().sorted().collect(Collectors.toList()), "Every user should be exported once");
+    }
+
+    /**
+     * Only the two DataSource configurations are loaded, the startup fails on the sharded DataSource
+     **/
+    @Test
+    @DisplayName("Sharding combined with a read replica fails the startup")
+    void testStartup_whenShardedWithReplica_fails() {
+        new ApplicationContextRunner()
+                .withUserConfiguration(ShardedDataSourceConfiguration.class, ReadWriteDataSourceConfiguration.class)
+                .withBean(DataSourceProperties.class)
+                .withPropertyValues("users.sharding.urls=" + SHARD_0 + "," + SHARD_1, "users.datasource.replica.url=jdbc:h2:mem:users-replica")
+                .run(context -> {
+                    Throwable failure = context.getStartupFailure();
+                    Assertions.assertNotNull(failure, "The startup should fail");
+
+                    while (failure.getCause() != null) {
+                        failure = failure.getCause();
+                    }
+                    Assertions.assertTrue(failure instanceof IllegalStateException, "The startup should fail on the configuration check");
+                    Assertions.assertTrue(failure.getMessage().contains("can't be combined"), "The message should name the conflict");
+                });
+    }
+
+    private List<Long> expectedIds() {
+        return createdUsers.stream().map(UserDto::getId).sorted().collect(Collectors.toList());
+    }
+
+    private static List<Long> ids(List<UserSummary> users) {
+        return users.stream().map(UserSummary::getId).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,123 @@
+package blog.yrol.junit.io;
+
+import java.util.UUID;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import blog.yrol.entity.UserEntity;
+import blog.yrol.entity.UsersRepository;
+import blog.yrol.junit.shared.TestUsers;
+
+/**
+ * Testing the second-level cache of UserEntity, using the Hibernate statistics to check which lookups reach the DB.
+ * Not transactional, so every repository call gets its own persistence context (no first-level cache in between).
+ */
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class UserCacheIntegrationTest {
+
+    @Autowired
+    UsersRepository usersRepository;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    Statistics statistics;
+
+    UserEntity user;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        user = usersRepository.save(TestUsers.userEntity("test@test.com"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        usersRepository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("Lookup by user ID is cached")
+    void testFindByUserId_whenLookedUpTwice_secondLookupSkipsDB() {
+        // Arrange
+        usersRepository.findByUserId(user.getUserId());
+        statistics.clear();
+
+        // Act
+        UserEntity storedUser = usersRepository.findByUserId(user.getUserId());
+
+        // Assert
+        Assertions.assertEquals(user.getEmail(), storedUser.getEmail(), "The cached user doesn't match");
+        Assertions.assertEquals(0, statistics.getPrepareStatementCount(), "The cached lookup shouldn't reach the DB");
+        Assertions.assertEquals(1, statistics.getNaturalIdCacheHitCount(), "The natural ID should be resolved from the cache");
+        Assertions.assertEquals(1, statistics.getSecondLevelCacheHitCount(), "The user should be loaded from the cache");
+    }
+
+    @Test
+    @DisplayName("Lookup by email is cached")
+    void testFindByEmail_whenLookedUpTwice_secondLookupSkipsDB() {
+        // Arrange
+        usersRepository.findByEmail(user.getEmail());
+        statistics.clear();
+
+        // Act
+        UserEntity storedUser = usersRepository.findByEmail(user.getEmail());
+
+        // Assert
+        Assertions.assertEquals(user.getUserId(), storedUser.getUserId(), "The cached user doesn't match");
+        Assertions.assertEquals(0, statistics.getPrepareStatementCount(), "The cached lookup shouldn't reach the DB");
+        Assertions.assertEquals(1, statistics.getQueryCacheHitCount(), "The query result should come from the cache");
+    }
+
+    @Test
+    @DisplayName("Saved changes invalidate the cache")
+    void testSave_whenUserUpdated_cachedLookupsReturnUpdatedUser() {
+        // Arrange
+        usersRepository.findByUserId(user.getUserId());
+        usersRepository.findByEmail(user.getEmail());
+        user.setFirstName("John");
+
+        // Act
+        usersRepository.save(user);
+
+        // Assert
+        Assertions.assertEquals("John", usersRepository.findByUserId(user.getUserId()).getFirstName(),
+                "Lookup by user ID should return the updated user");
+        Assertions.assertEquals("John", usersRepository.findByEmail(user.getEmail()).getFirstName(),
+                "Lookup by email should return the updated user");
+    }
+
+    @Test
+    @DisplayName("Cached email lookup sees new users")
+    void testFindByEmail_whenUserCreatedAfterMiss_returnsUser() {
+        // Arrange
+        Assertions.assertNull(usersRepository.findByEmail("new@test.com"), "The user shouldn't exist yet");
+
+        UserEntity newUser = new UserEntity();
+        newUser.setUserId(UUID.randomUUID().toString());
+        newUser.setFirstName("John");
+        newUser.setLastName("Cena");
+        newUser.setEmail("new@test.com");
+        newUser.setEncryptedPassword("12345678");
+
+        // Act
+        usersRepository.save(newUser);
+
+        // Assert
+        Assertions.assertNotNull(usersRepository.findByEmail("new@test.com"), "The cached miss should be invalidated by the insert");
+    }
+}
@@ -0,0 +1,77 @@
+package blog.yrol.junit.io;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+
+import blog.yrol.entity.UserEntity;
+import blog.yrol.entity.UsersRepository;
+import blog.yrol.junit.shared.TestUsers;
+
+/**
+ * Testing the pooled-lo user ID generator, the SQL sent to the DB is inspected to count the sequence calls.
+ * The allocation size is lowered to 10 for this test.
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.properties.users.id.allocation_size=" + UserIdGeneratorTest.ALLOCATION_SIZE,
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector=blog.yrol.junit.io.UserIdGeneratorTest$SequenceCallCounter"
+})
+public class UserIdGeneratorTest {
+
+    static final int ALLOCATION_SIZE = 10;
+
+    @Autowired
+    TestEntityManager testEntityManager;
+
+    @Autowired
+    UsersRepository usersRepository;
+
+    @BeforeEach
+    void setUp() {
+        SequenceCallCounter.SEQUENCE_CALLS.set(0);
+    }
+
+    @Test
+    @DisplayName("IDs are allocated in blocks")
+    void testSaveAll_whenManyUsersInserted_callsSequenceOncePerBlock() {
+        // Arrange
+        int users = 100;
+        List<UserEntity> userEntities = new ArrayList<>();
+        for (int i = 0; i < users; i++) {
+            userEntities.add(TestUsers.userEntity("user" + i + "@test.com"));
+        }
+
+        // Act
+        usersRepository.saveAll(userEntities);
+        testEntityManager.flush();
+
+        // Assert
+        Assertions.assertEquals(users, userEntities.stream().map(UserEntity::getId).distinct().count(), "Every user should get its own ID");
+        Assertions.assertEquals(users / ALLOCATION_SIZE, SequenceCallCounter.SEQUENCE_CALLS.get(),
+                "The sequence should be called once per " + ALLOCATION_SIZE + " inserts");
+    }
+
+    /*
+     * Counts the "next value for <sequence>" statements, instantiated by Hibernate
+     */
+    public static class SequenceCallCounter implements StatementInspector {
+
+        static final AtomicInteger SEQUENCE_CALLS = new AtomicInteger();
+
+        @Override
+        public String inspect(String sql) {
+            if (sql.toLowerCase().contains("next value for users_seq"))
+                SEQUENCE_CALLS.incrementAndGet();
+            return sql;
+        }
+    }
+}
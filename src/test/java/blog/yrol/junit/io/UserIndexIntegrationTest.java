@@ -0,0 +1,76 @@
+package blog.yrol.junit.io;
+
+import javax.persistence.PersistenceException;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import blog.yrol.entity.UserEntity;
+import blog.yrol.entity.UsersRepository;
+import blog.yrol.junit.shared.TestUsers;
+
+/**
+ * Checking the H2 query plans (EXPLAIN) of the email lookups, so they keep using the indexes declared on UserEntity
+ */
+@DataJpaTest
+public class UserIndexIntegrationTest {
+
+    @Autowired
+    TestEntityManager testEntityManager;
+
+    @Autowired
+    UsersRepository usersRepository;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        testEntityManager.persistAndFlush(TestUsers.userEntity("yrol@test.com"));
+    }
+
+    @Test
+    @DisplayName("Email lookup uses the email index")
+    void testFindByEmail_whenExplained_usesEmailIndex() {
+        // Act
+        String plan = explain("select * from users where email = ?", "yrol@test.com");
+
+        // Assert
+        Assertions.assertTrue(plan.contains("USERS_EMAIL_IDX"), "The email index should be used: " + plan);
+    }
+
+    @Test
+    @DisplayName("Domain lookup uses the reversed email index")
+    void testFindUserWithEmailEndingWith_whenExplained_usesReversedEmailIndex() {
+        // Act
+        String plan = explain("select * from users where email_reversed like ? escape '\\'",
+                UserEntity.reverseEmail("@test.com") + "%");
+
+        // Assert
+        Assertions.assertTrue(plan.contains("USERS_EMAIL_REVERSED_IDX"), "The reversed email index should be used: " + plan);
+        Assertions.assertEquals(1, usersRepository.findUserWithEmailEndingWith("@test.com").size(),
+                "There should be only one user in the list");
+    }
+
+    @Test
+    @DisplayName("Email is unique")
+    void testPersist_whenEmailAlreadyExists_throwsException() {
+        // Arrange
+        UserEntity duplicateUser = TestUsers.userEntity("yrol@test.com");
+
+        // Act & Assert
+        Assertions.assertThrows(PersistenceException.class, () -> {
+            testEntityManager.persistAndFlush(duplicateUser);
+        }, "The unique email index should reject duplicates");
+    }
+
+    private String explain(String sql, Object... params) {
+        return jdbcTemplate.queryForObject("explain " + sql, String.class, params).toUpperCase();
+    }
+}
@@ -3,15 +3,20 @@ package blog.yrol.junit.io;
 import java.util.List;
 import java.util.UUID;
 
+import org.hibernate.Session;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
 
 import blog.yrol.entity.UserEntity;
 import blog.yrol.entity.UsersRepository;
+import blog.yrol.junit.shared.TestUsers;
+import blog.yrol.shared.UserSummary;
 
 /**
  * Testing the query methods in Repository such as findByEmail & etc
@@ -96,4 +101,28 @@ public class UserRepositoryTest {
         Assertions.assertEquals(1, users.size(), "There should be only one user in the list");
         Assertions.assertTrue(users.get(0).getEmail().endsWith(emailDomainName));
     }
+
+    /*
+     * Testing the summary queries, only the public columns are selected (no entities are loaded)
+     */
+    @Test
+    void testFindSummariesByIdGreaterThan_whenGivenLastSeenId_returnsNextUserSummaries() {
+        // Arrange
+        UserEntity firstUser = testEntityManager.persistAndFlush(user);
+        UserEntity secondUser = testEntityManager.persistAndFlush(TestUsers.userEntity("john@cena.com"));
+        testEntityManager.clear();
+
+        // Act
+        List<UserSummary> firstPage = usersRepository.findSummaries(PageRequest.of(0, 1));
+        Slice<UserSummary> nextSlice = usersRepository.findSummariesByIdGreaterThan(firstUser.getId(), PageRequest.of(0, 2));
+
+        // Assert
+        Assertions.assertEquals(List.of(new UserSummary(firstUser.getId(), firstUser.getUserId(), firstUser.getFirstName(),
+                firstUser.getLastName(), firstUser.getEmail())), firstPage, "The first page should contain the first user");
+        Assertions.assertEquals(List.of(secondUser.getUserId()),
+                nextSlice.map(UserSummary::getUserId).getContent(), "The slice should contain the second user");
+        Assertions.assertFalse(nextSlice.hasNext(), "The slice should be the last one");
+        Assertions.assertEquals(0, testEntityManager.getEntityManager().unwrap(Session.class).getStatistics().getEntityCount(),
+                "No user entities should've been loaded into the persistence context");
+    }
 }
@@ -0,0 +1,132 @@
+package blog.yrol.junit.sceurity;
+
+import blog.yrol.sceurity.AuthenticationFilter;
+import blog.yrol.sceurity.TokenService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Unit testing the login body parsing of AuthenticationFilter with mock requests (no Spring context),
+ * the authentication manager only records the credentials it gets.
+ **/
+public class AuthenticationFilterTest {
+
+    static final int MAX_BODY_BYTES = 256;
+
+    AtomicReference<Authentication> authenticated;
+
+    AuthenticationFilter authenticationFilter;
+
+    @BeforeEach
+    void setUp() {
+        authenticated = new AtomicReference<>();
+        authenticationFilter = new AuthenticationFilter(authentication -> {
+            authenticated.set(authentication);
+            return authentication;
+        }, new TokenService(), new SimpleMeterRegistry(), new ObjectMapper(), MAX_BODY_BYTES);
+    }
+
+    @Test
+    @DisplayName("Credentials are read from the JSON body")
+    void testAttemptAuthentication_whenValidBody_authenticatesCredentials() {
+        // Arrange
+        MockHttpServletRequest request = loginRequest("{\"email\":\"test@test.com\",\"password\":\"12345678\"}");
+
+        // Act
+        authenticationFilter.attemptAuthentication(request, new MockHttpServletResponse());
+
+        // Assert
+        Assertions.assertEquals("test@test.com", authenticated.get().getPrincipal(), "The email doesn't match");
+        Assertions.assertEquals("12345678", authenticated.get().getCredentials(), "The password doesn't match");
+    }
+
+    @Test
+    @DisplayName("Oversized body is rejected before reading")
+    void testAttemptAuthentication_whenContentLengthTooLarge_returns413() {
+        // Arrange
+        MockHttpServletRequest request = loginRequest("{\"email\":\"test@test.com\",\"password\":\"" + "x".repeat(MAX_BODY_BYTES) + "\"}");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        // Act
+        authenticationFilter.attemptAuthentication(request, response);
+
+        // Assert
+        Assertions.assertEquals(HttpStatus.PAYLOAD_TOO_LARGE.value(), response.getStatus(), "HTTP code 413 should've been returned");
+        Assertions.assertNull(authenticated.get(), "Nothing should be authenticated");
+    }
+
+    /**
+     * Without a Content-Length (chunked body) the limit is enforced while parsing
+     **/
+    @Test
+    @DisplayName("Oversized chunked body is rejected")
+    void testAttemptAuthentication_whenChunkedBodyTooLarge_returns413() {
+        // Arrange
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/users/login") {
+            @Override
+            public long getContentLengthLong() {
+                return -1;
+            }
+        };
+        request.setContent(("{\"email\":\"test@test.com\",\"password\":\"" + "x".repeat(MAX_BODY_BYTES) + "\"}").getBytes(StandardCharsets.UTF_8));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        // Act
+        authenticationFilter.attemptAuthentication(request, response);
+
+        // Assert
+        Assertions.assertEquals(HttpStatus.PAYLOAD_TOO_LARGE.value(), response.getStatus(), "HTTP code 413 should've been returned");
+        Assertions.assertNull(authenticated.get(), "Nothing should be authenticated");
+    }
+
+    @Test
+    @DisplayName("Malformed body is rejected")
+    void testAttemptAuthentication_whenMalformedBody_returns400() {
+        // Arrange
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        // Act
+        authenticationFilter.attemptAuthentication(loginRequest("{\"email\":"), response);
+
+        // Assert
+        Assertions.assertEquals(HttpStatus.BAD_REQUEST.value(), response.getStatus(), "HTTP code 400 should've been returned");
+        Assertions.assertNull(authenticated.get(), "Nothing should be authenticated");
+    }
+
+    /**
+     * Well-formed JSON without the email or the password, a null email would reach the users cache (null key)
+     **/
+    @Test
+    @DisplayName("Body missing the credentials is rejected")
+    void testAttemptAuthentication_whenCredentialsMissing_returns400() {
+        for (String body : new String[] {"{}", "{\"password\":\"x\"}", "{\"email\":\"test@test.com\"}", "{\"email\":\" \",\"password\":\"x\"}"}) {
+            // Arrange
+            MockHttpServletResponse response = new MockHttpServletResponse();
+
+            // Act
+            authenticationFilter.attemptAuthentication(loginRequest(body), response);
+
+            // Assert
+            Assertions.assertEquals(HttpStatus.BAD_REQUEST.value(), response.getStatus(), body + " should be rejected with 400");
+            Assertions.assertNull(authenticated.get(), "Nothing should be authenticated");
+        }
+    }
+
+    private static MockHttpServletRequest loginRequest(String body) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/users/login");
+        request.setContentType("application/json");
+        request.setContent(body.getBytes(StandardCharsets.UTF_8));
+        return request;
+    }
+}
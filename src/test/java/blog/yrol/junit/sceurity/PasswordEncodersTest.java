@@ -0,0 +1,66 @@
+package blog.yrol.junit.sceurity;
+
+import blog.yrol.sceurity.PasswordEncoders;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+/**
+ * Unit testing the delegating password encoder setup, low work factors are used to keep the tests fast.
+ **/
+public class PasswordEncodersTest {
+
+    @Test
+    @DisplayName("Legacy BCrypt hashes match and get upgraded")
+    void testMatches_whenHashHasNoPrefix_matchesWithBCryptAndNeedsUpgrade() {
+        // Arrange
+        String legacyHash = new BCryptPasswordEncoder(4).encode("12345678");
+        PasswordEncoder passwordEncoder = PasswordEncoders.delegating(PasswordEncoders.BCRYPT, 4, 1000, 1024, 1);
+
+        // Act & Assert
+        Assertions.assertTrue(passwordEncoder.matches("12345678", legacyHash), "The legacy hash should match");
+        Assertions.assertTrue(passwordEncoder.upgradeEncoding(legacyHash), "The legacy hash should be upgraded to a prefixed one");
+    }
+
+    @Test
+    @DisplayName("New hashes use the configured algorithm")
+    void testEncode_whenArgon2Configured_returnsPrefixedArgon2Hash() {
+        // Arrange
+        PasswordEncoder passwordEncoder = PasswordEncoders.delegating(PasswordEncoders.ARGON2, 4, 1000, 1024, 1);
+
+        // Act
+        String encodedPassword = passwordEncoder.encode("12345678");
+
+        // Assert
+        Assertions.assertTrue(encodedPassword.startsWith("{argon2}"), "The hash should be prefixed with the algorithm");
+        Assertions.assertTrue(passwordEncoder.matches("12345678", encodedPassword), "The hash should match");
+        Assertions.assertFalse(passwordEncoder.upgradeEncoding(encodedPassword), "A current hash doesn't need an upgrade");
+    }
+
+    /**
+     * Hashes made with another algorithm or a lower BCrypt cost are flagged for rehashing, but still match
+     **/
+    @Test
+    @DisplayName("Outdated hashes get upgraded")
+    void testUpgradeEncoding_whenSettingsChanged_returnsTrue() {
+        // Arrange
+        String pbkdf2Hash = PasswordEncoders.delegating(PasswordEncoders.PBKDF2, 4, 1000, 1024, 1).encode("12345678");
+        String weakBCryptHash = PasswordEncoders.delegating(PasswordEncoders.BCRYPT, 4, 1000, 1024, 1).encode("12345678");
+        PasswordEncoder passwordEncoder = PasswordEncoders.delegating(PasswordEncoders.BCRYPT, 5, 1000, 1024, 1);
+
+        // Act & Assert
+        Assertions.assertTrue(passwordEncoder.matches("12345678", pbkdf2Hash), "The PBKDF2 hash should still match");
+        Assertions.assertTrue(passwordEncoder.upgradeEncoding(pbkdf2Hash), "The PBKDF2 hash should be upgraded");
+        Assertions.assertTrue(passwordEncoder.upgradeEncoding(weakBCryptHash), "The lower cost BCrypt hash should be upgraded");
+    }
+
+    @Test
+    @DisplayName("Unknown algorithm is rejected")
+    void testDelegating_whenAlgorithmUnknown_throwsIllegalArgumentException() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> {
+            PasswordEncoders.delegating("md5", 4, 1000, 1024, 1);
+        }, "IllegalArgumentException is expected to be thrown");
+    }
+}
@@ -0,0 +1,104 @@
+package blog.yrol.junit.sceurity;
+
+import blog.yrol.exception.PasswordHashingRejectedException;
+import blog.yrol.sceurity.PasswordHashingExecutor;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Unit testing the bounded password hashing pool (no Spring context), with one thread and a queue of one.
+ * The encoder blocks until released, so the pool can be saturated on purpose.
+ **/
+public class PasswordHashingExecutorTest {
+
+    CountDownLatch release;
+
+    CountDownLatch started;
+
+    SimpleMeterRegistry meterRegistry;
+
+    PasswordHashingExecutor passwordHashingExecutor;
+
+    @BeforeEach
+    void setUp() {
+        release = new CountDownLatch(1);
+        started = new CountDownLatch(1);
+        meterRegistry = new SimpleMeterRegistry();
+
+        BCryptPasswordEncoder blockingEncoder = new BCryptPasswordEncoder(4) {
+            @Override
+            public String encode(CharSequence rawPassword) {
+                started.countDown();
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.encode(rawPassword);
+            }
+        };
+
+        passwordHashingExecutor = new PasswordHashingExecutor(blockingEncoder, 1, 1, meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        passwordHashingExecutor.destroy();
+    }
+
+    @Test
+    @DisplayName("Passwords are encoded in order")
+    void testEncodeAll_whenPasswordsGiven_returnsMatchingHashes() {
+        // Arrange
+        release.countDown();
+
+        // Act
+        List<String> encodedPasswords = passwordHashingExecutor.encodeAll(List.of("12345678", "87654321"));
+
+        // Assert
+        Assertions.assertTrue(passwordHashingExecutor.matches("12345678", encodedPasswords.get(0)), "The first hash doesn't match");
+        Assertions.assertTrue(passwordHashingExecutor.matches("87654321", encodedPasswords.get(1)), "The second hash doesn't match");
+        Assertions.assertEquals(2, meterRegistry.get("password.hashing").tag("operation", "encode").timer().count(),
+                "Hash times should be recorded");
+    }
+
+    /**
+     * One task running and one queued fill the pool, the next one has to be rejected right away
+     **/
+    @Test
+    @DisplayName("Saturated pool rejects new work")
+    void testEncode_whenPoolSaturated_throwsPasswordHashingRejectedException() throws Exception {
+        // Arrange
+        CompletableFuture<String> running = CompletableFuture.supplyAsync(() -> passwordHashingExecutor.encode("12345678"));
+        Assertions.assertTrue(started.await(10, TimeUnit.SECONDS), "The first task should be running");
+        CompletableFuture<String> queued = CompletableFuture.supplyAsync(() -> passwordHashingExecutor.encode("12345678"));
+        waitForQueueSize(1);
+
+        // Act & Assert
+        Assertions.assertThrows(PasswordHashingRejectedException.class, () -> passwordHashingExecutor.encode("12345678"),
+                "PasswordHashingRejectedException is expected to be thrown");
+        Assertions.assertEquals(1.0, meterRegistry.get("password.hashing.rejected").counter().count(),
+                "Rejections should be published as a metric");
+
+        release.countDown();
+        Assertions.assertNotNull(running.get(10, TimeUnit.SECONDS), "The running task should complete");
+        Assertions.assertNotNull(queued.get(10, TimeUnit.SECONDS), "The queued task should complete");
+    }
+
+    private void waitForQueueSize(int size) throws InterruptedException {
+        for (int i = 0; i < 1000 && meterRegistry.get("password.hashing.queue.size").gauge().value() < size; i++) {
+            Thread.sleep(10);
+        }
+    }
+}
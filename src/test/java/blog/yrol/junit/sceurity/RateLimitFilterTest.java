@@ -0,0 +1,250 @@
+package blog.yrol.junit.sceurity;
+
+import blog.yrol.sceurity.RateLimitFilter;
+import blog.yrol.sceurity.RateLimiter;
+import com.github.benmanes.caffeine.cache.Ticker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.util.StreamUtils;
+
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequestWrapper;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Unit testing the login / signup rate limiting filter with mock requests (no Spring context).
+ **/
+public class RateLimitFilterTest {
+
+    SimpleMeterRegistry meterRegistry;
+
+    RateLimitFilter rateLimitFilter;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        rateLimitFilter = new RateLimitFilter(
+                new RateLimiter(60, 3, 1000, Ticker.systemTicker()),
+                new RateLimiter(60, 2, 1000, Ticker.systemTicker()),
+                1024, meterRegistry);
+    }
+
+    @Test
+    @DisplayName("Repeated logins for an email are throttled")
+    void testDoFilter_whenEmailBucketEmpty_returns429() throws Exception {
+        // Arrange
+        rateLimitFilter.doFilter(loginRequest("10.0.0.1", "test@test.com"), new MockHttpServletResponse(), new MockFilterChain());
+        rateLimitFilter.doFilter(loginRequest("10.0.0.2", "test@test.com"), new MockHttpServletResponse(), new MockFilterChain());
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockFilterChain chain = new MockFilterChain();
+
+        // Act
+        rateLimitFilter.doFilter(loginRequest("10.0.0.3", "TEST@test.com"), response, chain);
+
+        // Assert
+        Assertions.assertEquals(HttpStatus.TOO_MANY_REQUESTS.value(), response.getStatus(), "The third login should be throttled");
+        Assertions.assertEquals("1", response.getHeader(HttpHeaders.RETRY_AFTER), "Retry-After should be a second");
+        Assertions.assertNull(chain.getRequest(), "A throttled request shouldn't reach the next filters");
+        Assertions.assertEquals(1, meterRegistry.get("users.rate.limited").tag("limit", "email").counter().count(),
+                "The rejection should be counted");
+    }
+
+    @Test
+    @DisplayName("Repeated requests from an IP are throttled")
+    void testDoFilter_whenIpBucketEmpty_returns429() throws Exception {
+        // Arrange
+        for (int i = 0; i < 3; i++) {
+            rateLimitFilter.doFilter(loginRequest("10.0.0.1", "user" + i + "@test.com"), new MockHttpServletResponse(), new MockFilterChain());
+        }
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        // Act
+        rateLimitFilter.doFilter(loginRequest("10.0.0.1", "new@test.com"), response, new MockFilterChain());
+
+        // Assert
+        Assertions.assertEquals(HttpStatus.TOO_MANY_REQUESTS.value(), response.getStatus(), "The fourth request should be throttled");
+        Assertions.assertEquals(1, meterRegistry.get("users.rate.limited").tag("limit", "ip").counter().count(),
+                "The rejection should be counted");
+    }
+
+    @Test
+    @DisplayName("Allowed requests keep their body")
+    void testDoFilter_whenAllowed_bodyCanBeReadAgain() throws Exception {
+        // Arrange
+        MockHttpServletRequest request = loginRequest("10.0.0.1", "test@test.com");
+        MockFilterChain chain = new MockFilterChain();
+
+        // Act
+        rateLimitFilter.doFilter(request, new MockHttpServletResponse(), chain);
+
+        // Assert
+        Assertions.assertEquals(new String(request.getContentAsByteArray(), StandardCharsets.UTF_8),
+                StreamUtils.copyToString(chain.getRequest().getInputStream(), StandardCharsets.UTF_8),
+                "The next filters should get the same body");
+    }
+
+    @Test
+    @DisplayName("Allowed requests keep their body for async reads")
+    void testDoFilter_whenAllowed_bodyCanBeReadWithReadListener() throws Exception {
+        // Arrange
+        MockHttpServletRequest request = loginRequest("10.0.0.1", "test@test.com");
+        MockFilterChain chain = new MockFilterChain();
+        rateLimitFilter.doFilter(request, new MockHttpServletResponse(), chain);
+        ServletInputStream inputStream = chain.getRequest().getInputStream();
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        AtomicBoolean allDataRead = new AtomicBoolean();
+
+        // Act
+        inputStream.setReadListener(new ReadListener() {
+            @Override
+            public void onDataAvailable() throws IOException {
+                while (inputStream.isReady() && !inputStream.isFinished()) {
+                    body.write(inputStream.read());
+                }
+            }
+
+            @Override
+            public void onAllDataRead() {
+                allDataRead.set(true);
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                Assertions.fail(t);
+            }
+        });
+
+        // Assert
+        Assertions.assertTrue(allDataRead.get(), "The listener should be told the whole body was read");
+        Assertions.assertArrayEquals(request.getContentAsByteArray(), body.toByteArray(), "The next filters should get the same body");
+    }
+
+    /**
+     * The filter stops reading at the email field, the rest of the body is streamed to the next filters
+     **/
+    @Test
+    @DisplayName("Only the body up to the email is read by the filter")
+    void testDoFilter_whenEmailComesFirst_restOfBodyIsNotRead() throws Exception {
+        // Arrange
+        MockHttpServletRequest request = loginRequest("10.0.0.1", "test@test.com");
+        request.setContent(("{\"email\":\"test@test.com\",\"password\":\"" + "x".repeat(900) + "\"}").getBytes(StandardCharsets.UTF_8));
+        SlowRequest slowRequest = new SlowRequest(request);
+        MockFilterChain chain = new MockFilterChain();
+
+        // Act
+        rateLimitFilter.doFilter(slowRequest, new MockHttpServletResponse(), chain);
+        int bytesReadByFilter = slowRequest.bytesRead;
+        String body = StreamUtils.copyToString(chain.getRequest().getInputStream(), StandardCharsets.UTF_8);
+
+        // Assert
+        Assertions.assertTrue(bytesReadByFilter < request.getContentLength() / 2,
+                "The filter shouldn't read past the email, " + bytesReadByFilter + " bytes were read");
+        Assertions.assertEquals(new String(request.getContentAsByteArray(), StandardCharsets.UTF_8), body,
+                "The next filters should get the whole body");
+    }
+
+    @Test
+    @DisplayName("Oversized bodies are rejected")
+    void testDoFilter_whenBodyTooLarge_returns413() throws Exception {
+        // Arrange
+        MockHttpServletRequest request = loginRequest("10.0.0.1", "x".repeat(1024) + "@test.com");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockFilterChain chain = new MockFilterChain();
+
+        // Act
+        rateLimitFilter.doFilter(request, response, chain);
+
+        // Assert
+        Assertions.assertEquals(HttpStatus.PAYLOAD_TOO_LARGE.value(), response.getStatus(), "HTTP code 413 should've been returned");
+        Assertions.assertNull(chain.getRequest(), "An oversized request shouldn't reach the next filters");
+        Assertions.assertEquals(1, meterRegistry.get("users.body.too.large").counter().count(), "The rejection should be counted");
+    }
+
+    @Test
+    @DisplayName("Other endpoints are not throttled")
+    void testDoFilter_whenNotLoginOrSignup_isNotThrottled() throws Exception {
+        // Arrange
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        // Act
+        for (int i = 0; i < 10; i++) {
+            response = new MockHttpServletResponse();
+            rateLimitFilter.doFilter(new MockHttpServletRequest("GET", "/users"), response, new MockFilterChain());
+        }
+
+        // Assert
+        Assertions.assertEquals(HttpStatus.OK.value(), response.getStatus(), "GET /users shouldn't be throttled");
+    }
+
+    private static MockHttpServletRequest loginRequest(String ip, String email) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/users/login");
+        request.setRemoteAddr(ip);
+        request.setContentType("application/json");
+        request.setContent(("{\"email\":\"" + email + "\",\"password\":\"12345678\"}").getBytes(StandardCharsets.UTF_8));
+        return request;
+    }
+
+    /*
+     * Request stream returning at most 16 bytes per read, like a body arriving in small packets
+     */
+    private static class SlowRequest extends HttpServletRequestWrapper {
+
+        private final ByteArrayInputStream body;
+
+        int bytesRead;
+
+        SlowRequest(MockHttpServletRequest request) {
+            super(request);
+            this.body = new ByteArrayInputStream(request.getContentAsByteArray());
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            return new ServletInputStream() {
+                @Override
+                public boolean isFinished() {
+                    return body.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setReadListener(ReadListener readListener) {
+                    throw new UnsupportedOperationException();
+                }
+
+                @Override
+                public int read() {
+                    int b = body.read();
+                    if (b >= 0)
+                        bytesRead++;
+                    return b;
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) {
+                    int n = body.read(b, off, Math.min(len, 16));
+                    if (n > 0)
+                        bytesRead += n;
+                    return n;
+                }
+            };
+        }
+    }
+}
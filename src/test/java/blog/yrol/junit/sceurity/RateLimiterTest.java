@@ -0,0 +1,106 @@
+package blog.yrol.junit.sceurity;
+
+import blog.yrol.sceurity.RateLimiter;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Unit testing the token buckets, time is moved forward manually with a fake ticker.
+ **/
+public class RateLimiterTest {
+
+    static final int REQUESTS_PER_MINUTE = 60;
+
+    static final int BURST = 5;
+
+    AtomicLong time;
+
+    RateLimiter rateLimiter;
+
+    @BeforeEach
+    void setUp() {
+        time = new AtomicLong(TimeUnit.HOURS.toNanos(1));
+        rateLimiter = new RateLimiter(REQUESTS_PER_MINUTE, BURST, 1000, time::get);
+    }
+
+    @Test
+    @DisplayName("A burst is allowed, then requests are rejected")
+    void testTryAcquire_whenBurstExceeded_returnsWaitTime() {
+        // Act
+        for (int i = 0; i < BURST; i++) {
+            Assertions.assertEquals(0, rateLimiter.tryAcquire("127.0.0.1"), "Requests within the burst should be allowed");
+        }
+        long waitNanos = rateLimiter.tryAcquire("127.0.0.1");
+
+        // Assert
+        Assertions.assertEquals(TimeUnit.SECONDS.toNanos(1), waitNanos, "The next token should be available in a second");
+        Assertions.assertEquals(1, RateLimiter.retryAfterSeconds(waitNanos), "Retry-After should be a second");
+    }
+
+    /**
+     * Only the differences between the ticker readings matter, System.nanoTime() can start at a negative value
+     **/
+    @Test
+    @DisplayName("A fresh key is allowed whatever the ticker's origin")
+    void testTryAcquire_whenTickerIsNegative_allowsBurst() {
+        // Arrange
+        time.set(-TimeUnit.HOURS.toNanos(1));
+
+        // Act & Assert
+        for (int i = 0; i < BURST; i++) {
+            Assertions.assertEquals(0, rateLimiter.tryAcquire("127.0.0.1"), "Requests within the burst should be allowed");
+        }
+        Assertions.assertEquals(TimeUnit.SECONDS.toNanos(1), rateLimiter.tryAcquire("127.0.0.1"),
+                "The next token should be available in a second");
+    }
+
+    @Test
+    @DisplayName("Tokens come back over time")
+    void testTryAcquire_whenTimePassed_allowsAgain() {
+        // Arrange
+        for (int i = 0; i < BURST; i++) {
+            rateLimiter.tryAcquire("127.0.0.1");
+        }
+
+        // Act
+        time.addAndGet(TimeUnit.SECONDS.toNanos(1));
+
+        // Assert
+        Assertions.assertEquals(0, rateLimiter.tryAcquire("127.0.0.1"), "A token should be back after a second");
+        Assertions.assertTrue(rateLimiter.tryAcquire("127.0.0.1") > 0, "Only one token should be back");
+    }
+
+    @Test
+    @DisplayName("Keys have their own buckets")
+    void testTryAcquire_whenOtherKeyEmpty_allows() {
+        // Arrange
+        for (int i = 0; i < BURST; i++) {
+            rateLimiter.tryAcquire("127.0.0.1");
+        }
+
+        // Act & Assert
+        Assertions.assertTrue(rateLimiter.tryAcquire("127.0.0.1") > 0, "The empty bucket should reject");
+        Assertions.assertEquals(0, rateLimiter.tryAcquire("127.0.0.2"), "Another key shouldn't be affected");
+    }
+
+    @Test
+    @DisplayName("Full buckets are evicted")
+    void testTryAcquire_whenBucketsRefilled_evictsThem() {
+        // Arrange
+        for (int i = 0; i < 100; i++) {
+            rateLimiter.tryAcquire("10.0.0." + i);
+        }
+
+        // Act
+        time.addAndGet(TimeUnit.SECONDS.toNanos(BURST) + 1);
+        rateLimiter.tryAcquire("127.0.0.1");
+
+        // Assert
+        Assertions.assertEquals(1, rateLimiter.estimatedKeys(), "Only the bucket in use should be kept");
+    }
+}
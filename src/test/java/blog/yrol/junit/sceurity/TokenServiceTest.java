@@ -0,0 +1,75 @@
+package blog.yrol.junit.sceurity;
+
+import blog.yrol.sceurity.SecurityConstants;
+import blog.yrol.sceurity.TokenService;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.SignatureException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+
+/**
+ * Unit testing the token service (no Spring context)
+ **/
+public class TokenServiceTest {
+
+    TokenService tokenService;
+
+    @BeforeEach
+    void setUp() {
+        tokenService = new TokenService();
+    }
+
+    @Test
+    @DisplayName("Issued token can be verified")
+    void testVerify_whenTokenIssuedByService_returnsClaims() {
+        // Arrange
+        String token = tokenService.createToken("test@test.com");
+
+        // Act
+        Claims claims = tokenService.verify(token);
+
+        // Assert
+        Assertions.assertEquals("test@test.com", claims.getSubject(), "The subject doesn't match");
+        Assertions.assertTrue(claims.getExpiration().after(new Date()), "The token should not be expired");
+    }
+
+    /**
+     * Tokens signed with the secret string directly (how tokens were issued before) should still be accepted
+     **/
+    @Test
+    @DisplayName("Tokens signed with the secret string are accepted")
+    void testVerify_whenTokenSignedWithSecretString_returnsClaims() {
+        // Arrange
+        String token = Jwts.builder()
+                .setSubject("test@test.com")
+                .setExpiration(new Date(System.currentTimeMillis() + SecurityConstants.EXPIRATION_TIME))
+                .signWith(SignatureAlgorithm.HS512, SecurityConstants.TOKEN_SECRET)
+                .compact();
+
+        // Act
+        Claims claims = tokenService.verify(token);
+
+        // Assert
+        Assertions.assertEquals("test@test.com", claims.getSubject(), "The subject doesn't match");
+    }
+
+    @Test
+    @DisplayName("Tokens signed with another key are rejected")
+    void testVerify_whenSignedWithAnotherKey_throwsSignatureException() {
+        // Arrange
+        String token = Jwts.builder()
+                .setSubject("test@test.com")
+                .signWith(SignatureAlgorithm.HS512, "c29tZU90aGVyU2VjcmV0")
+                .compact();
+
+        // Act & Assert
+        Assertions.assertThrows(SignatureException.class, () -> tokenService.verify(token),
+                "SignatureException is expected to be thrown");
+    }
+}
@@ -0,0 +1,91 @@
+package blog.yrol.junit.sceurity;
+
+import blog.yrol.sceurity.SecurityConstants;
+import blog.yrol.sceurity.TokenService;
+import blog.yrol.sceurity.VerifiedTokenCache;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.SignatureException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Unit testing the verified token cache (no Spring context), tokens are verified with the same secret as the filters.
+ **/
+public class VerifiedTokenCacheTest {
+
+    TokenService tokenService = new TokenService();
+
+    VerifiedTokenCache verifiedTokenCache;
+
+    SimpleMeterRegistry meterRegistry;
+
+    AtomicInteger verifications;
+
+    Function<String, Claims> verifier;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        verifiedTokenCache = new VerifiedTokenCache(100, meterRegistry);
+        verifications = new AtomicInteger();
+
+        verifier = token -> {
+            verifications.incrementAndGet();
+            return tokenService.verify(token);
+        };
+    }
+
+    @Test
+    @DisplayName("A token is verified only once")
+    void testGetSubject_whenSameTokenUsedTwice_verifiesOnce() {
+        // Arrange
+        String token = tokenService.createToken("test@test.com");
+
+        // Act
+        String firstSubject = verifiedTokenCache.getSubject(token, verifier);
+        String secondSubject = verifiedTokenCache.getSubject(token, verifier);
+
+        // Assert
+        Assertions.assertEquals("test@test.com", firstSubject, "The subject doesn't match");
+        Assertions.assertEquals(firstSubject, secondSubject, "The cached subject doesn't match");
+        Assertions.assertEquals(1, verifications.get(), "The token should've been verified only once");
+        Assertions.assertEquals(1.0, meterRegistry.get("cache.gets")
+                .tag("cache", VerifiedTokenCache.CACHE_NAME)
+                .tag("result", "hit")
+                .functionCounter().count(), "Cache hits should be published as a metric");
+        Assertions.assertEquals(1.0, meterRegistry.get("cache.gets")
+                .tag("cache", VerifiedTokenCache.CACHE_NAME)
+                .tag("result", "miss")
+                .functionCounter().count(), "Cache misses should be published as a metric");
+    }
+
+    /**
+     * Tokens failing the signature check must never end up in the cache
+     **/
+    @Test
+    @DisplayName("Invalid tokens are not cached")
+    void testGetSubject_whenSignatureIsInvalid_throwsEveryTime() {
+        // Arrange
+        String token = Jwts.builder()
+                .setSubject("test@test.com")
+                .setExpiration(new Date(System.currentTimeMillis() + SecurityConstants.EXPIRATION_TIME))
+                .signWith(SignatureAlgorithm.HS512, "c29tZU90aGVyU2VjcmV0")
+                .compact();
+
+        // Act & Assert
+        Assertions.assertThrows(SignatureException.class, () -> verifiedTokenCache.getSubject(token, verifier),
+                "SignatureException is expected to be thrown");
+        Assertions.assertThrows(SignatureException.class, () -> verifiedTokenCache.getSubject(token, verifier),
+                "SignatureException is expected to be thrown");
+        Assertions.assertEquals(2, verifications.get(), "The token should've been verified on every call");
+    }
+}
@@ -0,0 +1,116 @@
+package blog.yrol.junit.service;
+
+import blog.yrol.entity.UserShards;
+import blog.yrol.entity.UsersRepository;
+import blog.yrol.service.EmailBloomFilter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doCallRealMethod;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit testing the registered emails Bloom filter (no Spring context), the emails are loaded from a mocked repository.
+ **/
+@ExtendWith(MockitoExtension.class)
+public class EmailBloomFilterTest {
+
+    static final int EMAILS = 10_000;
+
+    static final double FALSE_POSITIVE_RATE = 0.01;
+
+    @Mock
+    UsersRepository usersRepository;
+
+    SimpleMeterRegistry meterRegistry;
+
+    EmailBloomFilter emailFilter;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        emailFilter = new EmailBloomFilter(usersRepository, new UserShards(List.of()), true, "", EMAILS, FALSE_POSITIVE_RATE, meterRegistry);
+    }
+
+    @Test
+    @DisplayName("Every email might exist until the filter is loaded")
+    void testMightContain_whenNotLoaded_returnsTrue() {
+        Assertions.assertFalse(emailFilter.isReady(), "The filter shouldn't be ready before loading");
+        Assertions.assertTrue(emailFilter.mightContain("unknown@test.com"), "Unknown emails might exist until the filter is loaded");
+    }
+
+    @Test
+    @DisplayName("Registered emails are never ruled out")
+    void testMightContain_whenEmailRegistered_returnsTrue() {
+        // Arrange
+        doCallRealMethod().when(usersRepository).forEachEmail(any());
+        when(usersRepository.streamAllEmails()).thenReturn(IntStream.range(0, EMAILS).mapToObj(i -> "user" + i + "@test.com"));
+
+        // Act
+        emailFilter.load();
+        emailFilter.put("new@test.com");
+
+        // Assert
+        for (int i = 0; i < EMAILS; i++) {
+            Assertions.assertTrue(emailFilter.mightContain("user" + i + "@test.com"), "Registered email was ruled out");
+        }
+        Assertions.assertTrue(emailFilter.mightContain("new@test.com"), "Email added after loading was ruled out");
+    }
+
+    @Test
+    @DisplayName("False positives stay near the configured rate")
+    void testMightContain_whenFilterFull_falsePositivesWithinRate() {
+        // Arrange
+        doCallRealMethod().when(usersRepository).forEachEmail(any());
+        when(usersRepository.streamAllEmails()).thenReturn(IntStream.range(0, EMAILS).mapToObj(i -> "user" + i + "@test.com"));
+        emailFilter.load();
+
+        // Act
+        long falsePositives = IntStream.range(0, EMAILS)
+                .filter(i -> emailFilter.mightContain("unknown" + i + "@test.com"))
+                .count();
+
+        // Assert
+        Assertions.assertTrue(falsePositives < EMAILS * FALSE_POSITIVE_RATE * 2,
+                "Too many false positives: " + falsePositives);
+    }
+
+    @Test
+    @DisplayName("Memory used is published")
+    void testLoad_whenLoaded_publishesMetrics() {
+        // Arrange
+        doCallRealMethod().when(usersRepository).forEachEmail(any());
+        when(usersRepository.streamAllEmails()).thenReturn(Stream.of("test@test.com"));
+
+        // Act
+        emailFilter.load();
+
+        // Assert
+        Assertions.assertTrue(meterRegistry.get("users.email.filter.memory").gauge().value() > 0, "Memory used should be published");
+        Assertions.assertEquals(1, meterRegistry.get("users.email.filter.emails").gauge().value(), "Emails added should be published");
+    }
+
+    @Test
+    @DisplayName("Disabled filter never rules out emails")
+    void testMightContain_whenDisabled_returnsTrue() {
+        // Arrange
+        EmailBloomFilter disabledFilter = new EmailBloomFilter(usersRepository, new UserShards(List.of()), false, "", EMAILS, FALSE_POSITIVE_RATE, meterRegistry);
+
+        // Act
+        disabledFilter.load();
+
+        // Assert
+        Assertions.assertTrue(disabledFilter.mightContain("unknown@test.com"), "A disabled filter should never rule out emails");
+    }
+}
@@ -0,0 +1,143 @@
+package blog.yrol.junit.service;
+
+import blog.yrol.junit.shared.TestUsers;
+import blog.yrol.service.UserCache;
+import blog.yrol.shared.UserDto;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Unit testing the users cache (no Spring context), the loader counts how many lookups would have reached the DB.
+ **/
+public class UserCacheTest {
+
+    UserCache userCache;
+
+    SimpleMeterRegistry meterRegistry;
+
+    AtomicInteger lookups;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        userCache = new UserCache(100, Duration.ofMinutes(10), Duration.ofSeconds(30), meterRegistry);
+        lookups = new AtomicInteger();
+    }
+
+    @Test
+    @DisplayName("Unknown emails are looked up once")
+    void testGet_whenUserDoesNotExist_cachesTheMiss() {
+        // Act
+        Optional<UserDto> firstUser = userCache.get("unknown@test.com", this::missingUser);
+        Optional<UserDto> secondUser = userCache.get("unknown@test.com", this::missingUser);
+
+        // Assert
+        Assertions.assertFalse(firstUser.isPresent(), "No user should be returned");
+        Assertions.assertFalse(secondUser.isPresent(), "No user should be returned");
+        Assertions.assertEquals(1, lookups.get(), "The missing user should only be looked up once");
+    }
+
+    @Test
+    @DisplayName("Created users replace cached misses")
+    void testPut_whenMissCached_returnsTheCreatedUser() {
+        // Arrange
+        userCache.get("test@test.com", this::missingUser);
+
+        // Act
+        userCache.put(TestUsers.userDto("test@test.com"));
+        Optional<UserDto> user = userCache.get("test@test.com", this::missingUser);
+
+        // Assert
+        Assertions.assertTrue(user.isPresent(), "The created user should be returned");
+        Assertions.assertEquals(1, lookups.get(), "The created user shouldn't be looked up");
+    }
+
+    @Test
+    @DisplayName("Cached users can't be changed by callers")
+    void testGet_whenReturnedUserChanged_cachedUserIsUnchanged() {
+        // Arrange
+        userCache.put(TestUsers.userDto("test@test.com"));
+
+        // Act
+        userCache.get("test@test.com", this::missingUser).get().setFirstName("John");
+
+        // Assert
+        Assertions.assertEquals("Yrol", userCache.get("test@test.com", this::missingUser).get().getFirstName(),
+                "The cached user shouldn't be changed");
+    }
+
+    @Test
+    @DisplayName("Failed lookups are not cached")
+    void testGet_whenLoaderFails_retriesOnNextCall() {
+        // Act & Assert
+        Assertions.assertThrows(IllegalStateException.class, () -> {
+            userCache.get("test@test.com", email -> {
+                throw new IllegalStateException("DB is down");
+            });
+        }, "The loader exception should be propagated");
+
+        Assertions.assertFalse(userCache.get("test@test.com", this::missingUser).isPresent(), "No user should be returned");
+        Assertions.assertEquals(1, lookups.get(), "The failed lookup shouldn't be cached");
+    }
+
+    /**
+     * Concurrent misses for the same email should wait for the first lookup instead of querying the DB each
+     **/
+    @Test
+    @DisplayName("Concurrent misses share a single lookup")
+    void testGet_whenConcurrentMisses_looksUpOnce() throws Exception {
+        // Arrange
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Optional<UserDto>>> users = new ArrayList<>();
+
+        // Act
+        for (int i = 0; i < threads; i++) {
+            users.add(executor.submit(() -> {
+                start.await();
+                return userCache.get("test@test.com", email -> {
+                    lookups.incrementAndGet();
+                    sleep(100);
+                    return TestUsers.userDto(email);
+                });
+            }));
+        }
+        start.countDown();
+
+        // Assert
+        for (Future<Optional<UserDto>> user : users) {
+            Assertions.assertTrue(user.get(5, TimeUnit.SECONDS).isPresent(), "Every caller should get the user");
+        }
+        Assertions.assertEquals(1, lookups.get(), "The user should only be looked up once");
+
+        executor.shutdown();
+    }
+
+    private UserDto missingUser(String email) {
+        lookups.incrementAndGet();
+        return null;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
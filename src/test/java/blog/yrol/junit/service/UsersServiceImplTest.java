@@ -0,0 +1,298 @@
+package blog.yrol.junit.service;
+
+import blog.yrol.entity.ShardRoutingDataSource;
+import blog.yrol.entity.UserEntity;
+import blog.yrol.entity.UserShards;
+import blog.yrol.entity.UsersRepository;
+import blog.yrol.exception.PageTooDeepException;
+import blog.yrol.junit.shared.TestUsers;
+import blog.yrol.sceurity.PasswordHashingExecutor;
+import blog.yrol.sceurity.UserPrincipal;
+import blog.yrol.service.EmailBloomFilter;
+import blog.yrol.service.RecentWrites;
+import blog.yrol.service.UserCache;
+import blog.yrol.service.UsersServiceImpl;
+import blog.yrol.shared.BulkUserResult;
+import blog.yrol.shared.UserDto;
+import blog.yrol.shared.UserMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doCallRealMethod;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit testing the service layer with Mockito (no Spring context), the repository and the password encoder are mocked
+ * while the real DTO mapper and users cache are used.
+ **/
+@ExtendWith(MockitoExtension.class)
+public class UsersServiceImplTest {
+
+    @Mock
+    UsersRepository usersRepository;
+
+    @Mock
+    BCryptPasswordEncoder bCryptPasswordEncoder;
+
+    @Mock
+    PasswordHashingExecutor passwordHashingExecutor;
+
+    @Spy
+    UserMapper userMapper = new UserMapper();
+
+    /*
+     * Not loaded unless a test does it, so every email might exist and the lookups reach the repository
+     */
+    @Spy
+    EmailBloomFilter emailFilter = new EmailBloomFilter(mock(UsersRepository.class), new UserShards(List.of()), true, "", 1000, 0.01, new SimpleMeterRegistry());
+
+    @Spy
+    UserCache userCache = new UserCache(100, Duration.ofMinutes(10), Duration.ofSeconds(30), new SimpleMeterRegistry());
+
+    @Spy
+    RecentWrites recentWrites = new RecentWrites(Duration.ofSeconds(5), 100);
+
+    /*
+     * Unsharded, every user goes to the mocked repository
+     */
+    @Spy
+    UserShards userShards = new UserShards(List.of());
+
+    @InjectMocks
+    UsersServiceImpl usersService;
+
+    UserEntity userEntity;
+
+    @BeforeEach
+    void setUp() {
+        userEntity = TestUsers.userEntity("test@test.com");
+    }
+
+    /**
+     * The principal returned to Spring Security should carry the public user details,
+     * so the login success handler doesn't have to load the user again
+     **/
+    @Test
+    @DisplayName("Loaded user carries the user ID")
+    void testLoadUserByUsername_whenUserExists_returnsPrincipalWithUserId() {
+        // Arrange
+        when(usersRepository.findByEmail(userEntity.getEmail())).thenReturn(userEntity);
+
+        // Act
+        UserDetails userDetails = usersService.loadUserByUsername(userEntity.getEmail());
+
+        // Assert
+        Assertions.assertTrue(userDetails instanceof UserPrincipal, "A UserPrincipal should be returned");
+        UserPrincipal userPrincipal = (UserPrincipal) userDetails;
+        Assertions.assertEquals(userEntity.getUserId(), userPrincipal.getUserId(), "User ID does not match");
+        Assertions.assertEquals(userEntity.getEmail(), userPrincipal.getUsername(), "User email should match");
+        Assertions.assertEquals(userEntity.getEncryptedPassword(), userPrincipal.getPassword(), "Encrypted password should match");
+        verify(usersRepository, times(1)).findByEmail(userEntity.getEmail());
+    }
+
+    @Test
+    @DisplayName("Unknown email is rejected")
+    void testLoadUserByUsername_whenUserDoesNotExist_throwsUsernameNotFoundException() {
+        // Arrange
+        when(usersRepository.findByEmail("unknown@test.com")).thenReturn(null);
+
+        // Act & Assert
+        Assertions.assertThrows(UsernameNotFoundException.class, () -> {
+            usersService.loadUserByUsername("unknown@test.com");
+        }, "UsernameNotFoundException is expected to be thrown");
+    }
+
+    @Test
+    @DisplayName("Unknown email is looked up once")
+    void testLoadUserByUsername_whenUnknownEmailRepeated_queriesDBOnce() {
+        // Arrange
+        when(usersRepository.findByEmail("unknown@test.com")).thenReturn(null);
+
+        // Act
+        for (int i = 0; i < 3; i++) {
+            Assertions.assertThrows(UsernameNotFoundException.class, () -> {
+                usersService.loadUserByUsername("unknown@test.com");
+            }, "UsernameNotFoundException is expected to be thrown");
+        }
+
+        // Assert
+        verify(usersRepository, times(1)).findByEmail("unknown@test.com");
+    }
+
+    @Test
+    @DisplayName("Emails ruled out by the email filter skip the DB")
+    void testLoadUserByUsername_whenEmailFilterRulesOutEmail_doesNotQueryDB() {
+        // Arrange
+        UsersRepository emailsRepository = mock(UsersRepository.class);
+        doCallRealMethod().when(emailsRepository).forEachEmail(any());
+        when(emailsRepository.streamAllEmails()).thenReturn(Stream.of(userEntity.getEmail()));
+        EmailBloomFilter loadedEmailFilter = new EmailBloomFilter(emailsRepository, userShards, true, "", 1000, 0.01, new SimpleMeterRegistry());
+        loadedEmailFilter.load();
+
+        UsersServiceImpl filteredUsersService = new UsersServiceImpl(usersRepository, userMapper, null,
+                passwordHashingExecutor, userCache, loadedEmailFilter, recentWrites, userShards);
+
+        // Act & Assert
+        Assertions.assertThrows(UsernameNotFoundException.class, () -> {
+            filteredUsersService.loadUserByUsername("unknown@test.com");
+        }, "UsernameNotFoundException is expected to be thrown");
+        verify(usersRepository, never()).findByEmail("unknown@test.com");
+    }
+
+    @Test
+    @DisplayName("Created user is cached")
+    void testGetUser_whenUserJustCreated_doesNotQueryDB() {
+        // Arrange
+        when(usersRepository.findByEmail("new@test.com")).thenReturn(null);
+        when(passwordHashingExecutor.encode("12345678")).thenReturn("encrypted");
+        when(usersRepository.save(any(UserEntity.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        UserDto createdUser = usersService.createUser(TestUsers.userDto("new@test.com"));
+
+        // Act
+        UserDto user = usersService.getUser("new@test.com");
+
+        // Assert
+        Assertions.assertEquals(createdUser.getUserId(), user.getUserId(), "User ID does not match");
+        verify(usersRepository, times(1)).findByEmail("new@test.com");
+    }
+
+    @Test
+    @DisplayName("Rehashed password is stored")
+    void testUpdatePassword_whenUserExists_storesNewHash() {
+        // Arrange
+        when(usersRepository.findByEmail(userEntity.getEmail())).thenReturn(userEntity);
+        UserDetails userDetails = usersService.loadUserByUsername(userEntity.getEmail());
+
+        // Act
+        UserDetails updatedUser = usersService.updatePassword(userDetails, "{bcrypt}newHash");
+
+        // Assert
+        Assertions.assertEquals("{bcrypt}newHash", updatedUser.getPassword(), "The returned user should carry the new hash");
+        Assertions.assertEquals("{bcrypt}newHash", userEntity.getEncryptedPassword(), "The new hash should be stored");
+        verify(usersRepository, times(1)).save(userEntity);
+    }
+
+    /**
+     * Existing emails and emails repeated within the request are reported as duplicates,
+     * only the remaining users are hashed and saved
+     **/
+    @Test
+    @DisplayName("Bulk creation skips duplicates")
+    void testCreateUsers_whenEmailsAlreadyExist_returnsDuplicates() {
+        // Arrange
+        List<UserDto> users = List.of(TestUsers.userDto("test@test.com"), TestUsers.userDto("new@test.com"), TestUsers.userDto("new@test.com"));
+        when(usersRepository.findExistingEmails(anyCollection())).thenReturn(Set.of("test@test.com"));
+        when(passwordHashingExecutor.encodeAll(List.of("12345678"))).thenReturn(List.of("encrypted"));
+        when(usersRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        // Act
+        List<BulkUserResult> results = usersService.createUsers(users);
+
+        // Assert
+        Assertions.assertEquals(3, results.size(), "Every user should have a result");
+        Assertions.assertEquals(BulkUserResult.Status.DUPLICATE, results.get(0).getStatus(), "Existing email should be a duplicate");
+        Assertions.assertEquals(BulkUserResult.Status.CREATED, results.get(1).getStatus(), "New email should be created");
+        Assertions.assertEquals(BulkUserResult.Status.DUPLICATE, results.get(2).getStatus(), "Repeated email should be a duplicate");
+        Assertions.assertNotNull(results.get(1).getUser().getUserId(), "Created user should have a user ID");
+        Assertions.assertEquals("encrypted", results.get(1).getUser().getEncryptedPassword(), "Encrypted password should match");
+        verify(usersRepository, times(1)).findExistingEmails(anyCollection());
+        verify(userCache, never()).put(any(UserDto.class));
+        verify(userCache, times(1)).invalidate("new@test.com");
+    }
+
+    /**
+     * The shards are stored one after the other, a failing one mustn't lose the results of the others
+     **/
+    @Test
+    @DisplayName("Bulk creation only fails the users of the failing shard")
+    void testCreateUsers_whenOneShardFails_failsOnlyItsUsers() {
+        // Arrange
+        UserShards shardedUsers = new UserShards(List.of("shard-0", "shard-1"));
+        UsersServiceImpl shardedService = new UsersServiceImpl(usersRepository, userMapper, null,
+                passwordHashingExecutor, userCache, emailFilter, recentWrites, shardedUsers);
+        List<UserDto> users = IntStream.range(0, 10)
+                .mapToObj(i -> TestUsers.userDto("user" + i + "@test.com"))
+                .collect(Collectors.toList());
+        when(usersRepository.findExistingEmails(anyCollection())).thenReturn(Set.of());
+        when(passwordHashingExecutor.encodeAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(usersRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            if (ShardRoutingDataSource.currentShard() == 1)
+                throw new DataAccessResourceFailureException("Shard 1 is down");
+            return invocation.getArgument(0);
+        });
+
+        try {
+            // Act
+            List<BulkUserResult> results = shardedService.createUsers(users);
+
+            // Assert
+            for (int i = 0; i < users.size(); i++) {
+                BulkUserResult.Status expected = shardedUsers.shardOf(users.get(i).getEmail()) == 1
+                        ? BulkUserResult.Status.FAILED : BulkUserResult.Status.CREATED;
+                Assertions.assertEquals(expected, results.get(i).getStatus(), users.get(i).getEmail() + " should be " + expected);
+            }
+            Assertions.assertTrue(results.stream().anyMatch(result -> result.getStatus() == BulkUserResult.Status.FAILED),
+                    "Some users should be on the failing shard");
+            Assertions.assertTrue(results.stream().anyMatch(result -> result.getStatus() == BulkUserResult.Status.CREATED),
+                    "Some users should be on the working shard");
+            verify(usersRepository, times(2)).saveAll(anyList());
+        } finally {
+            shardedUsers.destroy();
+        }
+    }
+
+    /**
+     * Every shard loads all the users up to the page, deep offset pages are rejected before reaching the shards
+     **/
+    @Test
+    @DisplayName("Deep offset pages are rejected when sharded")
+    void testGetUsers_whenShardedPageTooDeep_throwsPageTooDeepException() {
+        // Arrange
+        UserShards shardedUsers = new UserShards(List.of("shard-0", "shard-1"));
+        UsersServiceImpl shardedService = new UsersServiceImpl(usersRepository, userMapper, null,
+                passwordHashingExecutor, userCache, emailFilter, recentWrites, shardedUsers);
+        when(usersRepository.findSummaries(any(Pageable.class))).thenReturn(List.of());
+
+        try {
+            // Act & Assert
+            Assertions.assertTrue(shardedService.getUsers(UsersServiceImpl.MAX_SHARDED_OFFSET / 100, 100).isEmpty(),
+                    "The last page within the cap should be read");
+            Assertions.assertThrows(PageTooDeepException.class, () -> shardedService.getUsers(UsersServiceImpl.MAX_SHARDED_OFFSET / 100 + 1, 100),
+                    "The page past the cap should be rejected");
+            Assertions.assertThrows(PageTooDeepException.class, () -> shardedService.getUsers(100000, 100),
+                    "A far page should be rejected");
+            verify(usersRepository, times(2)).findSummaries(PageRequest.of(0, UsersServiceImpl.MAX_SHARDED_OFFSET));
+            verify(usersRepository, times(2)).findSummaries(any(Pageable.class));
+        } finally {
+            shardedUsers.destroy();
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package blog.yrol.junit.service;
+
+import blog.yrol.entity.UsersRepository;
+import blog.yrol.junit.shared.TestUsers;
+import blog.yrol.service.UserCache;
+import blog.yrol.service.UsersService;
+import blog.yrol.shared.UserDto;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.orm.jpa.support.OpenEntityManagerInViewInterceptor;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import javax.persistence.EntityManagerFactory;
+
+/**
+ * Testing the transaction boundaries of the service layer with the Hibernate statistics.
+ * Dirty checking happens when the persistence context is flushed, so read paths shouldn't flush at all.
+ **/
+@SpringBootTest
+public class UsersServiceReadOnlyIntegrationTest {
+
+    @Autowired
+    UsersService usersService;
+
+    @Autowired
+    UsersRepository usersRepository;
+
+    @Autowired
+    UserCache userCache;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    ApplicationContext applicationContext;
+
+    Statistics statistics;
+
+    UserDto user;
+
+    @BeforeEach
+    void setUp() {
+        user = usersService.createUser(TestUsers.userDto("read.only@test.com"));
+
+        /*
+         * Created users are cached, the lookups below have to reach the DB
+         */
+        userCache.invalidate(user.getEmail());
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @AfterEach
+    void tearDown() {
+        usersRepository.deleteAll();
+        userCache.invalidate(user.getEmail());
+    }
+
+    @Test
+    @DisplayName("Loading a user doesn't flush")
+    void testLoadUserByUsername_whenUserLoadedFromDB_doesNotFlush() {
+        // Act
+        UserDetails userDetails = usersService.loadUserByUsername(user.getEmail());
+
+        // Assert
+        Assertions.assertEquals(user.getEmail(), userDetails.getUsername(), "User email should match");
+        Assertions.assertEquals(1, statistics.getEntityLoadCount() + statistics.getSecondLevelCacheHitCount(),
+                "The user should've been loaded");
+        Assertions.assertEquals(0, statistics.getFlushCount(), "A read-only lookup shouldn't be flushed (dirty checked)");
+    }
+
+    @Test
+    @DisplayName("Listing users doesn't load entities or flush")
+    void testGetUsers_whenUsersListed_doesNotLoadEntitiesOrFlush() {
+        // Act
+        int users = usersService.getUsers(1, 10).size();
+
+        // Assert
+        Assertions.assertEquals(1, users, "There should be exactly one user in the list");
+        Assertions.assertEquals(0, statistics.getEntityLoadCount(), "Only the summaries should've been selected");
+        Assertions.assertEquals(0, statistics.getFlushCount(), "A read-only transaction shouldn't be flushed (dirty checked)");
+    }
+
+    @Test
+    @DisplayName("Open session in view is disabled")
+    void testContext_whenStarted_hasNoOpenEntityManagerInViewInterceptor() {
+        // Assert
+        Assertions.assertTrue(applicationContext.getBeansOfType(OpenEntityManagerInViewInterceptor.class).isEmpty(),
+                "The persistence context shouldn't be held open for the whole request");
+    }
+
+    /**
+     * The lookup joins the read-write transaction, so the new hash is written
+     **/
+    @Test
+    @DisplayName("Rehashed password is still stored")
+    void testUpdatePassword_whenCalled_flushesNewHash() {
+        // Arrange
+        UserDetails userDetails = usersService.loadUserByUsername(user.getEmail());
+
+        // Act
+        usersService.updatePassword(userDetails, "{bcrypt}newHash");
+
+        // Assert
+        Assertions.assertEquals(1, statistics.getFlushCount(), "The update should've been flushed once");
+        Assertions.assertEquals("{bcrypt}newHash", usersRepository.findByEmail(user.getEmail()).getEncryptedPassword(),
+                "The new hash should be stored");
+    }
+}
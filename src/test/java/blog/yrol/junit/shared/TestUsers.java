@@ -0,0 +1,56 @@
+package blog.yrol.junit.shared;
+
+import blog.yrol.entity.UserEntity;
+import blog.yrol.shared.UserDto;
+import blog.yrol.ui.request.UserDetailsRequestModel;
+
+import java.util.UUID;
+
+/**
+ * Test users shared by the tests, only the email differs between them (same names and password)
+ **/
+public final class TestUsers {
+
+    public static final String PASSWORD = "12345678";
+
+    private TestUsers() {
+    }
+
+    /**
+     * New user, as passed to UsersService.createUser / createUsers
+     **/
+    public static UserDto userDto(String email) {
+        UserDto userDto = new UserDto();
+        userDto.setFirstName("Yrol");
+        userDto.setLastName("Fernando");
+        userDto.setEmail(email);
+        userDto.setPassword(PASSWORD);
+        return userDto;
+    }
+
+    /**
+     * User ready to be saved, with a random user ID (the password is stored as is)
+     **/
+    public static UserEntity userEntity(String email) {
+        UserEntity userEntity = new UserEntity();
+        userEntity.setUserId(UUID.randomUUID().toString());
+        userEntity.setFirstName("Yrol");
+        userEntity.setLastName("Fernando");
+        userEntity.setEmail(email);
+        userEntity.setEncryptedPassword(PASSWORD);
+        return userEntity;
+    }
+
+    /**
+     * Signup request body (POST /users)
+     **/
+    public static UserDetailsRequestModel userDetails(String email) {
+        UserDetailsRequestModel userDetails = new UserDetailsRequestModel();
+        userDetails.setFirstName("Yrol");
+        userDetails.setLastName("Fernando");
+        userDetails.setEmail(email);
+        userDetails.setPassword(PASSWORD);
+        userDetails.setRepeatPassword(PASSWORD);
+        return userDetails;
+    }
+}
@@ -0,0 +1,76 @@
+package blog.yrol.junit.shared;
+
+import blog.yrol.entity.UserEntity;
+import blog.yrol.junit.shared.TestUsers;
+import blog.yrol.shared.UserDto;
+import blog.yrol.shared.UserMapper;
+import blog.yrol.ui.request.UserDetailsRequestModel;
+import blog.yrol.ui.response.UserRest;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.modelmapper.ModelMapper;
+
+
+/**
+ * Checking the hand written conversions give the same results as mapping with ModelMapper
+ * (which is what the controller and the service layer used before).
+ **/
+public class UserMapperTest {
+
+    UserMapper userMapper;
+
+    ModelMapper modelMapper;
+
+    UserEntity userEntity;
+
+    @BeforeEach
+    void setUp() {
+        userMapper = new UserMapper();
+        modelMapper = new ModelMapper();
+
+        userEntity = TestUsers.userEntity("test@test.com");
+        userEntity.setId(1L);
+    }
+
+    @Test
+    void testToUserDto_whenRequestModelProvided_mapsSameAsModelMapper() {
+        // Arrange
+        UserDetailsRequestModel userDetails = TestUsers.userDetails("test@test.com");
+
+        // Act
+        UserDto userDto = userMapper.toUserDto(userDetails);
+
+        // Assert
+        Assertions.assertEquals(modelMapper.map(userDetails, UserDto.class), userDto, "The user DTO doesn't match");
+    }
+
+    @Test
+    void testToUserEntity_whenUserDtoProvided_mapsAllColumns() {
+        // Arrange
+        UserDto userDto = userMapper.toUserDto(userEntity);
+
+        // Act
+        UserEntity mappedEntity = userMapper.toUserEntity(userDto);
+
+        // Assert
+        Assertions.assertEquals(userEntity.getId(), mappedEntity.getId(), "The ID doesn't match");
+        Assertions.assertEquals(userEntity.getUserId(), mappedEntity.getUserId(), "The user ID doesn't match");
+        Assertions.assertEquals(userEntity.getFirstName(), mappedEntity.getFirstName(), "The first name doesn't match");
+        Assertions.assertEquals(userEntity.getLastName(), mappedEntity.getLastName(), "The last name doesn't match");
+        Assertions.assertEquals(userEntity.getEmail(), mappedEntity.getEmail(), "The email doesn't match");
+        Assertions.assertEquals(userEntity.getEncryptedPassword(), mappedEntity.getEncryptedPassword(), "The encrypted password doesn't match");
+    }
+
+    @Test
+    void testToUserRest_whenUserDtoProvided_mapsSameAsModelMapper() {
+        // Arrange
+        UserDto userDto = userMapper.toUserDto(userEntity);
+
+        // Act
+        UserRest userRest = userMapper.toUserRest(userDto);
+
+        // Assert
+        Assertions.assertEquals(modelMapper.map(userDto, UserRest.class), userRest, "The user rest model doesn't match");
+    }
+}
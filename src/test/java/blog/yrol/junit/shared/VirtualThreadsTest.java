@@ -0,0 +1,44 @@
+package blog.yrol.junit.shared;
+
+import blog.yrol.shared.VirtualThreads;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Unit testing the reflective virtual thread executor, which test runs depends on the JDK running the build.
+ **/
+public class VirtualThreadsTest {
+
+    @Test
+    @DisplayName("Tasks run on named virtual threads")
+    void testNewExecutor_whenSupported_runsTasksOnVirtualThreads() throws Exception {
+        // Arrange
+        Assumptions.assumeTrue(VirtualThreads.isSupported(), "Virtual threads need Java 21 or later");
+        ExecutorService executor = VirtualThreads.newExecutor("test-virtual-");
+
+        // Act
+        Thread thread = executor.submit(Thread::currentThread).get(10, TimeUnit.SECONDS);
+        executor.shutdown();
+
+        // Assert
+        Assertions.assertTrue(thread.getName().startsWith("test-virtual-"), "The thread name should use the prefix");
+        Assertions.assertTrue((Boolean) Thread.class.getMethod("isVirtual").invoke(thread), "The thread should be virtual");
+    }
+
+    @Test
+    @DisplayName("Older runtimes are rejected")
+    void testNewExecutor_whenNotSupported_throwsIllegalStateException() {
+        // Arrange
+        Assumptions.assumeFalse(VirtualThreads.isSupported(), "Only applies before Java 21");
+
+        // Act & Assert
+        Assertions.assertThrows(IllegalStateException.class, () -> {
+            VirtualThreads.newExecutor("test-virtual-");
+        }, "IllegalStateException is expected to be thrown");
+    }
+}
@@ -0,0 +1,84 @@
+package blog.yrol.junit.ui.controllers;
+
+import blog.yrol.junit.shared.TestUsers;
+import blog.yrol.sceurity.SecurityConstants;
+import blog.yrol.service.UsersService;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.metrics.AutoConfigureMetrics;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Integration test for the metrics scraped from /actuator/prometheus, running on a random port.
+ * A successful and a failed login and a page of users are requested first, so the login, JWT, hashing, service, mapping
+ * and repository timers have samples.
+ **/
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@AutoConfigureMetrics
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class MetricsIntegrationTest {
+
+    @Autowired
+    private TestRestTemplate testRestTemplate;
+
+    @Autowired
+    private UsersService usersService;
+
+    String metrics;
+
+    @BeforeAll
+    void setUp() {
+        usersService.createUser(TestUsers.userDto("test@test.com"));
+
+        ResponseEntity<String> loginResponse =
+                testRestTemplate.postForEntity("/users/login", Map.of("email", "test@test.com", "password", "12345678"), String.class);
+        testRestTemplate.postForEntity("/users/login", Map.of("email", "test@test.com", "password", "wrongPassword"), String.class);
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(SecurityConstants.HEADER_STRING, loginResponse.getHeaders().getFirst(SecurityConstants.HEADER_STRING));
+        testRestTemplate.exchange("/users?page=0&limit=2", HttpMethod.GET, new HttpEntity<>(headers), String.class);
+
+        ResponseEntity<String> response = testRestTemplate.getForEntity("/actuator/prometheus", String.class);
+        Assertions.assertEquals(HttpStatus.OK, response.getStatusCode(), "The metrics should be scraped without a JWT");
+        metrics = response.getBody();
+    }
+
+    @Test
+    @DisplayName("Login attempts are timed by result")
+    void testPrometheus_whenLoginsMade_returnsLoginTimers() {
+        Assertions.assertTrue(hasSample("users_login_seconds_count", "result=\"success\""), "Successful logins should be timed");
+        Assertions.assertTrue(hasSample("users_login_seconds_count", "result=\"failure\""), "Failed logins should be timed");
+        Assertions.assertTrue(hasSample("users_login_seconds_bucket", "result=\"success\""), "Login histogram buckets should be exported");
+    }
+
+    @Test
+    @DisplayName("Hashing, JWT, service, mapping and repository calls are timed")
+    void testPrometheus_whenLoginsMade_returnsLayerTimers() {
+        Assertions.assertTrue(hasSample("password_hashing_seconds_bucket", "operation=\"matches\""), "Password checks should be timed");
+        Assertions.assertTrue(hasSample("jwt_seconds_bucket", "operation=\"sign\""), "JWT signing should be timed");
+        Assertions.assertTrue(hasSample("users_service_seconds_bucket", "method=\"createUser\""), "Service calls should be timed");
+        Assertions.assertTrue(hasSample("users_mapping_seconds_bucket", "method=\"toUserRestsFromSummaries\""), "Mapping should be timed");
+        Assertions.assertFalse(hasSample("users_mapping_seconds_count", "method=\"toUserDto\""),
+                "Single user conversions (run per row in exports) shouldn't be timed");
+        Assertions.assertTrue(hasSample("spring_data_repository_invocations_seconds_bucket", "method=\"save\""),
+                "Repository queries should be timed");
+    }
+
+    private boolean hasSample(String name, String label) {
+        return Arrays.stream(metrics.split("\n"))
+                .anyMatch(line -> line.startsWith(name + "{") && line.contains(label));
+    }
+}
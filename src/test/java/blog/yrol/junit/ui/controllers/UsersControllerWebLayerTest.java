@@ -1,9 +1,17 @@
 package blog.yrol.junit.ui.controllers;
 
+import blog.yrol.exception.PageTooDeepException;
+import blog.yrol.exception.PasswordHashingRejectedException;
+import blog.yrol.junit.shared.TestUsers;
 import blog.yrol.service.UsersService;
+import blog.yrol.shared.BulkUserResult;
+import blog.yrol.shared.UserCursor;
 import blog.yrol.shared.UserDto;
+import blog.yrol.shared.UserMapper;
+import blog.yrol.shared.UserSummary;
 import blog.yrol.ui.controllers.UsersController;
 import blog.yrol.ui.request.UserDetailsRequestModel;
+import blog.yrol.ui.response.BulkUserResultRest;
 import blog.yrol.ui.response.UserRest;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.Assertions;
@@ -15,6 +23,10 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
@@ -22,18 +34,27 @@ import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.RequestBuilder;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 
+import java.util.List;
 import java.util.UUID;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 /**
  * Using @WebMvcTest only to make sure ONLY the web layer is tested (i.e. no service layer & etc and the beans related to the web layer will only be added to spring context when running the test).
  * Also restricting to run tests against "blog.yrol.ui.controllers.UsersController" only (or adding this class only to the spring context when running tests).
  * @AutoConfigureMockMvc(addFilters = false) - exclude @service, @Component and @repository loading into teh spring context when running
+ * @Import(UserMapper.class) - adding the (real) DTO mapper used by the controller to the spring context
  * **/
 @WebMvcTest(controllers = UsersController.class)
 @AutoConfigureMockMvc(addFilters = false)
+@Import(UserMapper.class)
 public class UsersControllerWebLayerTest {
 
     @Autowired
@@ -174,4 +195,142 @@ public class UsersControllerWebLayerTest {
         Assertions.assertEquals(HttpStatus.BAD_REQUEST.value(), mvcResult.getResponse().getStatus(), "Incorrect HTTP Status Code returned.");
     }
 
+
+    @Test
+    @DisplayName("Cursor pagination returns the next cursor")
+    void testGetUsers_whenCursorProvided_returnsUsersAndNextCursor() throws Exception {
+        // Arrange
+        UserSummary userSummary = new UserSummary(5, UUID.randomUUID().toString(), userDetailsRequestModel.getFirstName(),
+                userDetailsRequestModel.getLastName(), userDetailsRequestModel.getEmail());
+        when(usersService.getUsersAfter(eq(4L), eq(1)))
+                .thenReturn(new SliceImpl<>(List.of(userSummary), PageRequest.of(0, 1), true));
+
+        RequestBuilder requestBuilder = MockMvcRequestBuilders.get("/users")
+                .param("after", UserCursor.encode(4))
+                .param("limit", "1")
+                .accept(MediaType.APPLICATION_JSON);
+
+        // Act
+        MvcResult mvcResult = mockMvc.perform(requestBuilder).andReturn();
+
+        // Assert
+        Assertions.assertEquals(HttpStatus.OK.value(), mvcResult.getResponse().getStatus(), "Incorrect HTTP Status Code returned.");
+        Assertions.assertEquals(5L, UserCursor.decode(mvcResult.getResponse().getHeader(UsersController.NEXT_CURSOR_HEADER)),
+                "The next cursor should point after the last returned user");
+        Assertions.assertTrue(mvcResult.getResponse().getContentAsString().contains(userSummary.getUserId()),
+                "The user should be returned");
+    }
+
+    @Test
+    @DisplayName("Invalid cursor is rejected")
+    void testGetUsers_whenCursorIsInvalid_returns400StatusCode() throws Exception {
+        // Arrange
+        RequestBuilder requestBuilder = MockMvcRequestBuilders.get("/users")
+                .param("after", "not-a-cursor")
+                .accept(MediaType.APPLICATION_JSON);
+
+        // Act
+        MvcResult mvcResult = mockMvc.perform(requestBuilder).andReturn();
+
+        // Assert
+        Assertions.assertEquals(HttpStatus.BAD_REQUEST.value(), mvcResult.getResponse().getStatus(), "Incorrect HTTP Status Code returned.");
+    }
+
+    /**
+     * Out of range limits are rejected before reaching the service (an empty page request, or a whole table in one page)
+     **/
+    @Test
+    @DisplayName("Out of range page limit is rejected")
+    void testGetUsers_whenLimitIsOutOfRange_returns400StatusCode() throws Exception {
+        for (String limit : List.of("0", "-1", "101")) {
+            // Arrange
+            RequestBuilder requestBuilder = MockMvcRequestBuilders.get("/users")
+                    .param("after", "")
+                    .param("limit", limit)
+                    .accept(MediaType.APPLICATION_JSON);
+
+            // Act
+            MvcResult mvcResult = mockMvc.perform(requestBuilder).andReturn();
+
+            // Assert
+            Assertions.assertEquals(HttpStatus.BAD_REQUEST.value(), mvcResult.getResponse().getStatus(),
+                    "Limit " + limit + " should be rejected");
+        }
+        verifyNoInteractions(usersService);
+    }
+
+    @Test
+    @DisplayName("Offset page too deep for the shards is rejected")
+    void testGetUsers_whenPageTooDeep_returns400StatusCode() throws Exception {
+        // Arrange
+        when(usersService.getUsers(100000, 100)).thenThrow(new PageTooDeepException("Use the cursor"));
+
+        RequestBuilder requestBuilder = MockMvcRequestBuilders.get("/users")
+                .param("page", "100000")
+                .param("limit", "100")
+                .accept(MediaType.APPLICATION_JSON);
+
+        // Act
+        MvcResult mvcResult = mockMvc.perform(requestBuilder).andReturn();
+
+        // Assert
+        Assertions.assertEquals(HttpStatus.BAD_REQUEST.value(), mvcResult.getResponse().getStatus(), "Incorrect HTTP Status Code returned.");
+    }
+
+    /**
+     * Only the valid users are passed to the service, the invalid one is reported without stopping the others
+     **/
+    @Test
+    @DisplayName("Bulk creation reports invalid users")
+    void testCreateUsers_whenOneUserIsInvalid_returnsPerUserResults() throws Exception {
+        // Arrange
+        UserDetailsRequestModel invalidUser = TestUsers.userDetails("invalid@test.com");
+        invalidUser.setFirstName("Y");
+
+        UserDto userDto = new ModelMapper().map(userDetailsRequestModel, UserDto.class);
+        userDto.setUserId(UUID.randomUUID().toString());
+        when(usersService.createUsers(anyList())).thenReturn(List.of(BulkUserResult.created(userDto)));
+
+        RequestBuilder requestBuilder = MockMvcRequestBuilders.post("/users/bulk")
+                .contentType("application/x-ndjson")
+                .accept(MediaType.APPLICATION_JSON)
+                .content(new ObjectMapper().writeValueAsString(invalidUser) + "\n"
+                        + new ObjectMapper().writeValueAsString(userDetailsRequestModel) + "\n");
+
+        // Act
+        MvcResult mvcResult = mockMvc.perform(requestBuilder).andReturn();
+        BulkUserResultRest[] results = new ObjectMapper().readValue(mvcResult.getResponse().getContentAsString(), BulkUserResultRest[].class);
+
+        // Assert
+        Assertions.assertEquals(HttpStatus.OK.value(), mvcResult.getResponse().getStatus(), "Incorrect HTTP Status Code returned.");
+        Assertions.assertEquals(2, results.length, "Every user should have a result");
+        Assertions.assertEquals(BulkUserResult.Status.INVALID, results[0].getStatus(), "The first user should be invalid");
+        Assertions.assertEquals(BulkUserResult.Status.CREATED, results[1].getStatus(), "The second user should be created");
+        Assertions.assertEquals(1, results[1].getIndex(), "The index should match the position in the request");
+        Assertions.assertEquals(userDto.getUserId(), results[1].getUserId(), "The returned user ID doesn't match");
+        verify(usersService, times(1)).createUsers(argThat(users -> users.size() == 1));
+    }
+
+    /**
+     * A saturated password hashing pool isn't reported as failed users, the whole request is rejected fast so the client retries
+     **/
+    @Test
+    @DisplayName("Bulk creation is rejected when the password hashing pool is saturated")
+    void testCreateUsers_whenPasswordHashingPoolIsSaturated_returns503() throws Exception {
+        // Arrange
+        when(usersService.createUsers(anyList())).thenThrow(new PasswordHashingRejectedException("Too many concurrent signups, retry later"));
+
+        RequestBuilder requestBuilder = MockMvcRequestBuilders.post("/users/bulk")
+                .contentType("application/x-ndjson")
+                .accept(MediaType.APPLICATION_JSON)
+                .content(new ObjectMapper().writeValueAsString(userDetailsRequestModel) + "\n");
+
+        // Act
+        MvcResult mvcResult = mockMvc.perform(requestBuilder).andReturn();
+
+        // Assert
+        Assertions.assertEquals(HttpStatus.SERVICE_UNAVAILABLE.value(), mvcResult.getResponse().getStatus(), "Incorrect HTTP Status Code returned.");
+        Assertions.assertEquals(PasswordHashingRejectedException.RETRY_AFTER_SECONDS, mvcResult.getResponse().getHeader(HttpHeaders.RETRY_AFTER),
+                "The client should be told when to retry");
+    }
 }
@@ -0,0 +1,105 @@
+package blog.yrol.junit.ui.controllers;
+
+import blog.yrol.sceurity.SecurityConstants;
+import blog.yrol.sceurity.TokenService;
+import blog.yrol.service.UsersService;
+import blog.yrol.shared.UserDto;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+/**
+ * Integration test for the streaming users export, running on a random port (the export is written asynchronously
+ * by the servlet container so it is tested over real HTTP).
+ **/
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class UsersExportIntegrationTest {
+
+    @Autowired
+    private TestRestTemplate testRestTemplate;
+
+    @Autowired
+    private UsersService usersService;
+
+    @Autowired
+    private TokenService tokenService;
+
+    HttpHeaders headers;
+
+    /**
+     * Creating the users to export (one of them with a comma in the last name) and a JWT for the requests
+     **/
+    @BeforeAll
+    void setUp() {
+        createUser("Yrol", "Fernando", "test@test.com");
+        createUser("John", "Cena, Jr", "john@cena.com");
+        createUser("Jane", "Doe", "jane@doe.com");
+
+        headers = new HttpHeaders();
+        headers.setBearerAuth(tokenService.createToken("test@test.com"));
+    }
+
+    @Test
+    @DisplayName("Users can be exported as NDJSON")
+    void testExportUsers_whenFormatIsNdjson_returnsOneJsonObjectPerLine() {
+        // Act
+        ResponseEntity<String> response = testRestTemplate.exchange("/users/export", HttpMethod.GET,
+                new HttpEntity<>(headers), String.class);
+
+        // Assert
+        Assertions.assertEquals(HttpStatus.OK, response.getStatusCode());
+        Assertions.assertEquals("application/x-ndjson", response.getHeaders().getContentType().toString());
+
+        String[] lines = response.getBody().split("\n");
+        Assertions.assertEquals(3, lines.length, "There should be one line per user");
+        Assertions.assertTrue(lines[0].startsWith("{") && lines[0].contains("\"email\":\"test@test.com\""),
+                "Each line should be a JSON object");
+        Assertions.assertFalse(lines[0].contains("Password"), "Passwords should never be exported");
+    }
+
+    @Test
+    @DisplayName("Users can be exported as CSV")
+    void testExportUsers_whenFormatIsCsv_returnsHeaderAndOneRowPerUser() {
+        // Act
+        ResponseEntity<String> response = testRestTemplate.exchange("/users/export?format=csv", HttpMethod.GET,
+                new HttpEntity<>(headers), String.class);
+
+        // Assert
+        Assertions.assertEquals(HttpStatus.OK, response.getStatusCode());
+
+        String[] lines = response.getBody().split("\n");
+        Assertions.assertEquals(4, lines.length, "There should be a header and one line per user");
+        Assertions.assertEquals("userId,firstName,lastName,email", lines[0], "The CSV header doesn't match");
+        Assertions.assertTrue(lines[2].endsWith(",John,\"Cena, Jr\",john@cena.com"), "Fields with commas should be quoted");
+    }
+
+    @Test
+    @DisplayName("Export requires JWT")
+    void testExportUsers_whenMissingJWT_returns403() {
+        // Act
+        ResponseEntity<String> response = testRestTemplate.getForEntity("/users/export", String.class);
+
+        // Assert
+        Assertions.assertEquals(HttpStatus.FORBIDDEN, response.getStatusCode(), "HTTP code 403 should've been returned.");
+    }
+
+    private void createUser(String firstName, String lastName, String email) {
+        UserDto userDto = new UserDto();
+        userDto.setFirstName(firstName);
+        userDto.setLastName(lastName);
+        userDto.setEmail(email);
+        userDto.setPassword("12345678");
+        usersService.createUser(userDto);
+    }
+}